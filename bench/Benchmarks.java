@@ -0,0 +1,510 @@
+/*
+ * @filename Benchmarks.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains microbenchmarks for the hot paths of learning and
+ * prediction. It works like a small JMH: every benchmark is warmed up, then
+ * run for a fixed time per iteration, and the average time per operation is
+ * reported with its error. Results are fed to a sink so the JIT can't throw
+ * the work away
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * The benchmark runner. Run it from the project root so the example and
+ * feature data files are found
+ *
+ *  java -cp out Benchmarks [-warmup n] [-iterations n] [-time ms]
+ *                          [-scale k] [filter regex]
+ *
+ * Inputs come from src/examples, and from synthetic versions scaled up k
+ * times by repeating the examples with their words shuffled
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class Benchmarks {
+
+    /** The examples to learn from */
+    private static final String EXAMPLES = "src/examples/10k_examples.dat";
+
+    /** The lines to ask about */
+    private static final String QUESTIONS = "src/examples/eval1k.in";
+
+    /** How many boosting rounds the ensemble being asked has */
+    private static final int ROUNDS = 200;
+
+    /** Where results go so the JIT has to compute them */
+    private static volatile long sink;
+
+    /** The benchmarks by name, in the order they run */
+    private final Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+
+    /**
+     * Run the benchmarks
+     *
+     * @param args the options and an optional filter on the names
+     * @throws IOException if the example files can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        int warmup = 3, iterations = 5, time = 1000, scale = 10;
+        Pattern filter = Pattern.compile(".*");
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("-warmup") && i + 1 < args.length)
+                warmup = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-iterations") && i + 1 < args.length)
+                iterations = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-time") && i + 1 < args.length)
+                time = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-scale") && i + 1 < args.length)
+                scale = Integer.parseInt(args[++i]);
+            else
+                filter = Pattern.compile(args[i]);
+        }
+
+        Benchmarks suite = new Benchmarks();
+        suite.setUp(scale);
+        System.out.printf("%-40s %8s %14s %12s%n", "Benchmark", "Cnt",
+                "Score ns/op", "Error");
+        for(Map.Entry<String, Benchmark> entry :
+                suite.benchmarks.entrySet()){
+            if(!filter.matcher(entry.getKey()).find())
+                continue;
+            double[] scores = entry.getValue().measure(warmup, iterations,
+                    time);
+            System.out.printf("%-40s %8d %14.1f %12.1f%n", entry.getKey(),
+                    scores.length, mean(scores), error(scores));
+        }
+    }
+
+    /**
+     * Load the inputs and register every benchmark
+     *
+     * @param scale how many times bigger the synthetic inputs are
+     * @throws IOException if the example files can't be read
+     */
+    private void setUp(int scale) throws IOException {
+        DutchInput input = new DutchInput();
+        List<String> questions = Files.readAllLines(Paths.get(QUESTIONS));
+        List<String> examples = Files.readAllLines(Paths.get(EXAMPLES));
+        List<String> scaledQuestions = scale(questions, scale, false);
+        Dataset small = dataset(examples, input);
+        Dataset large = dataset(scale(examples, scale, true), input);
+
+        // feature extraction, per line
+        for(List<String> lines : List.of(questions, scaledQuestions)){
+            String size = "[" + lines.size() + "]";
+            String[] array = lines.toArray(new String[0]);
+            add("features.getFeatures" + size, array.length, () -> {
+                long h = 0;
+                for(String line : array)
+                    h += input.getFeatures(line).hashCode();
+                return h;
+            });
+            add("features.getFeatureBits" + size, array.length, () -> {
+                long h = 0;
+                for(String line : array)
+                    h += input.getFeatureBits(line);
+                return h;
+            });
+        }
+
+        // learning, per call
+        for(Dataset data : List.of(small, large)){
+            String size = "[" + data.size() + "]";
+            int[] indices = data.indices();
+            long attr = data.allAttributes();
+            double[] weights = weights(data.size());
+            SplitStats stats = new SplitStats(data.attributes(),
+                    data.classes().length);
+            add("learn.mostImportant" + size, 1, () ->
+                    Utils.mostImportant(data, stats, indices, 0,
+                            indices.length, attr));
+            add("learn.mostImportant.weighted" + size, 1, () ->
+                    Utils.mostImportant(data, stats, indices, 0,
+                            indices.length, attr, weights));
+            add("learn.remainder" + size, 1, () -> {
+                stats.count(data, indices, 0, indices.length, attr);
+                long h = 0;
+                for(int a = 0; a < data.attributes(); a++)
+                    h += Double.doubleToLongBits(stats.remainder(a));
+                return h;
+            });
+            add("learn.remainder.weighted" + size, 1, () -> {
+                stats.count(data, indices, 0, indices.length, attr,
+                        weights);
+                long h = 0;
+                for(int a = 0; a < data.attributes(); a++)
+                    h += Double.doubleToLongBits(stats.remainder(a));
+                return h;
+            });
+            add("learn.stumpLearn" + size, 1, () ->
+                    Ensemble.stumpLearn(data, stats, indices, 0,
+                            indices.length, attr, weights, 1).hashCode());
+            add("learn.adaboostRound" + size, 1, () ->
+                    Ensemble.adaboostLearn(data, 1, attr).hashCode());
+        }
+
+        // prediction, per line
+        DecisionTree tree = DecisionTree.decisionTreeLearn(small,
+                small.allAttributes(), -1);
+        Ensemble ensemble = Ensemble.adaboostLearn(small, ROUNDS,
+                small.allAttributes());
+        Ensemble compacted = ensemble.compact();
+        Map<String, Hypothesis> models = new LinkedHashMap<>();
+        models.put("DecisionTree", tree);
+        models.put("CompiledTree", CompiledTree.compile(tree));
+        models.put("Generated", ModelGenerator.generate(tree));
+        models.put("Ensemble", ensemble);
+        models.put("Ensemble.compact", compacted);
+
+        // every way of asking has to give the same answers before it is
+        // timed, with a third label too so the block codes can't assume two
+        Dataset three = dataset(relabel(examples, "xx", 3), input);
+        DecisionTree threeTree = DecisionTree.decisionTreeLearn(three,
+                three.allAttributes(), -1);
+        Map<String, Hypothesis> checked = new LinkedHashMap<>(models);
+        checked.put("DecisionTree.three", threeTree);
+        checked.put("CompiledTree.three", CompiledTree.compile(threeTree));
+        checked.put("Generated.three", ModelGenerator.generate(threeTree));
+        checked.put("Ensemble.three", Ensemble.adaboostLearn(three, 20,
+                three.allAttributes()));
+        check(checked, questions, input);
+        checkBoosting(scale(examples, scale, true), input);
+        checkModelFormat(input.features());
+        for(List<String> lines : List.of(questions, scaledQuestions)){
+            String size = "[" + lines.size() + "]";
+            List<List<Boolean>> rows = new ArrayList<>();
+            FeatureBlock block = new FeatureBlock(input.features(),
+                    lines.size());
+            for(String line : lines){
+                rows.add(input.getFeatures(line));
+                block.add(input.getFeatureBits(line));
+            }
+            byte[] out = new byte[lines.size()];
+            for(Map.Entry<String, Hypothesis> model : models.entrySet()){
+                Hypothesis h = model.getValue();
+                add("ask." + model.getKey() + size, rows.size(), () -> {
+                    long sum = 0;
+                    for(List<Boolean> row : rows)
+                        sum += h.ask(row).length();
+                    return sum;
+                });
+                add("ask." + model.getKey() + ".block" + size, rows.size(),
+                        () -> {
+                    h.ask(block, out);
+                    return out[out.length - 1];
+                });
+            }
+        }
+    }
+
+    /**
+     * Register a benchmark
+     *
+     * @param name the name of the benchmark
+     * @param operations how many operations one call does
+     * @param body the work, its result goes to the sink
+     */
+    private void add(String name, int operations, LongSupplier body){
+        benchmarks.put(name, new Benchmark(operations, body));
+    }
+
+    /**
+     * Make a synthetic input k times bigger. Every copy after the first
+     * has the words after the label in a shuffled order
+     *
+     * @param lines the lines to scale
+     * @param k how many copies
+     * @param labelled whether the lines start with 'label|'
+     * @return the scaled lines
+     */
+    private static List<String> scale(List<String> lines, int k,
+                                      boolean labelled){
+        Random random = new Random(k);
+        List<String> scaled = new ArrayList<>(lines);
+        for(int copy = 1; copy < k; copy++){
+            for(String line : lines){
+                int bar = labelled ? line.indexOf('|') + 1 : 0;
+                List<String> words = Arrays.asList(
+                        line.substring(bar).split(" "));
+                Collections.shuffle(words, random);
+                scaled.add(line.substring(0, bar) + String.join(" ", words));
+            }
+        }
+        return scaled;
+    }
+
+    /**
+     * Give every nth example line a new label
+     *
+     * @param lines the example lines
+     * @param label the new label
+     * @param n how often to change it
+     * @return the relabelled lines
+     */
+    private static List<String> relabel(List<String> lines, String label,
+                                        int n){
+        List<String> relabelled = new ArrayList<>(lines);
+        for(int i = 0; i < relabelled.size(); i += n){
+            String line = relabelled.get(i);
+            relabelled.set(i, label + line.substring(line.indexOf('|')));
+        }
+        return relabelled;
+    }
+
+    /**
+     * Make sure every model gives the same label for a line whether it is
+     * asked about the line alone or in a block
+     *
+     * @param models the models by name
+     * @param lines the lines to ask about
+     * @param input finds the features
+     * @throws IllegalStateException if a model disagrees with itself
+     */
+    private static void check(Map<String, Hypothesis> models,
+                              List<String> lines, DutchInput input){
+        FeatureBlock block = new FeatureBlock(input.features(), lines.size());
+        for(String line : lines)
+            block.add(input.getFeatureBits(line));
+        byte[] out = new byte[lines.size()];
+        for(Map.Entry<String, Hypothesis> model : models.entrySet()){
+            Hypothesis h = model.getValue();
+            String[] labels = h.labels();
+            h.ask(block, out);
+            for(int r = 0; r < lines.size(); r++)
+                if(!Objects.equals(labels[out[r]], h.ask(block.row(r))))
+                    throw new IllegalStateException(model.getKey() +
+                            " answers line " + r + " differently in a block");
+        }
+    }
+
+    /**
+     * Make sure boosting makes the same ensemble bit for bit from examples
+     * in memory, from their feature file and from worker processes holding
+     * its chunks. There should be more than one chunk of examples so the
+     * order the chunks are added up in matters
+     *
+     * @param lines the example lines
+     * @param input finds the features
+     * @throws IOException if the examples or feature file can't be written
+     * @throws IllegalStateException if the ensembles differ
+     */
+    private static void checkBoosting(List<String> lines, DutchInput input)
+            throws IOException {
+        Path examples = Files.createTempFile("boosting", ".dat");
+        try {
+            Files.write(examples, lines);
+            FeatureCache cache = new FeatureCache(input);
+            Dataset data = cache.load(examples);
+            Map<String, Ensemble> ensembles = new LinkedHashMap<>();
+            ensembles.put("memory", Ensemble.adaboostLearn(data, 20,
+                    data.allAttributes()));
+            try(FeatureFile file = cache.stream(examples)) {
+                ensembles.put("-stream", StreamingLearner.adaboostLearn(file,
+                        20, file.allAttributes(), TrainingListener.NONE));
+                try(ShardCoordinator workers = ShardCoordinator.spawn(file,
+                        2)) {
+                    ensembles.put("-workers", StreamingLearner.adaboostLearn(
+                            workers, 20, file.allAttributes(),
+                            TrainingListener.NONE));
+                }
+            }
+            byte[] memory = null;
+            for(Map.Entry<String, Ensemble> ensemble : ensembles.entrySet()){
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(ensemble.getValue());
+                }
+                if(memory == null)
+                    memory = bytes.toByteArray();
+                else if(!Arrays.equals(memory, bytes.toByteArray()))
+                    throw new IllegalStateException("Boosting with " +
+                            ensemble.getKey() + " makes a different " +
+                            "ensemble than in memory");
+            }
+        } finally {
+            Files.deleteIfExists(FeatureCache.cacheFile(examples));
+            Files.deleteIfExists(examples);
+        }
+    }
+
+    /**
+     * Make sure a model file with a bad node is turned away with an
+     * IOException, not an unchecked exception from inside the reader or
+     * the model. A stump file is written and its nodes are corrupted one
+     * at a time. The tree is the end of the file, so the last leaf's label
+     * is the last short, its attribute the one before, and the root's
+     * attribute is three nodes from the end
+     *
+     * @param features how many features models are asked with
+     * @throws IOException if the stump can't be written or read back
+     * @throws IllegalStateException if a corrupt file is read
+     */
+    private static void checkModelFormat(int features) throws IOException {
+        DecisionTree stump = new DecisionTree(0);
+        stump.addSubtree(new Leaf(Utils.EN));
+        stump.addSubtree(new Leaf(Utils.NL));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ModelFormat.write(stump, new DataOutputStream(bytes));
+        byte[] good = bytes.toByteArray();
+        if(!stump.equals(ModelFormat.read(ByteBuffer.wrap(good), features)))
+            throw new IllegalStateException("A stump reads back changed");
+
+        int label = good.length - 2, leaf = good.length - 4;
+        int root = good.length - 12;
+        int[][] corrupt = {{label, 2}, {label, -2}, {label, Short.MIN_VALUE},
+                {leaf, -2}, {root, features}, {root, 64}, {root, 40000}};
+        for(int[] c : corrupt){
+            ByteBuffer buffer = ByteBuffer.wrap(good.clone());
+            buffer.putShort(c[0], (short) c[1]);
+            try {
+                ModelFormat.read(buffer, features);
+            } catch (IOException e) {
+                continue;
+            }
+            throw new IllegalStateException("A model with " + c[1] +
+                    " at byte " + c[0] + " was read");
+        }
+    }
+
+    /**
+     * Pack example lines into a dataset
+     *
+     * @param lines the example lines
+     * @param input finds the features
+     * @return the dataset
+     */
+    private static Dataset dataset(List<String> lines, DutchInput input){
+        Dataset.Builder builder = new Dataset.Builder(input.features());
+        for(String line : lines){
+            if(line.isBlank())
+                continue;
+            Element e = input.createElement(line);
+            builder.add(e.getFeatures(), e.getLabel());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Starting weights like the first boosting round, with a little noise
+     * so the sums aren't all the same
+     *
+     * @param n how many examples
+     * @return the weights
+     */
+    private static double[] weights(int n){
+        Random random = new Random(n);
+        double[] weights = new double[n];
+        for(int i = 0; i < n; i++)
+            weights[i] = (0.5 + random.nextDouble()) / n;
+        return weights;
+    }
+
+    /**
+     * The average of some scores
+     *
+     * @param scores the scores
+     * @return the mean
+     */
+    private static double mean(double[] scores){
+        double sum = 0;
+        for(double score : scores)
+            sum += score;
+        return sum / scores.length;
+    }
+
+    /**
+     * The error of the mean, three standard errors like a 99.9% interval
+     *
+     * @param scores the scores
+     * @return the error
+     */
+    private static double error(double[] scores){
+        if(scores.length < 2)
+            return Double.NaN;
+        double mean = mean(scores), sum = 0;
+        for(double score : scores)
+            sum += (score - mean) * (score - mean);
+        return 3 * Math.sqrt(sum / (scores.length - 1) / scores.length);
+    }
+
+    /**
+     * One benchmark, the work and how many operations it does per call
+     */
+    private static class Benchmark {
+
+        /** How many operations one call does */
+        private final int operations;
+
+        /** The work */
+        private final LongSupplier body;
+
+        /**
+         * Create a benchmark
+         *
+         * @param operations how many operations one call does
+         * @param body the work
+         */
+        private Benchmark(int operations, LongSupplier body){
+            this.operations = operations;
+            this.body = body;
+        }
+
+        /**
+         * Warm up and then measure
+         *
+         * @param warmup how many iterations to throw away
+         * @param iterations how many iterations to measure
+         * @param time how long each iteration runs in milliseconds
+         * @return the nanoseconds per operation of each iteration
+         */
+        private double[] measure(int warmup, int iterations, int time){
+            for(int i = 0; i < warmup; i++)
+                iteration(time);
+            double[] scores = new double[iterations];
+            for(int i = 0; i < iterations; i++)
+                scores[i] = iteration(time);
+            return scores;
+        }
+
+        /**
+         * Call the work over and over for a while
+         *
+         * @param time how long to run in milliseconds
+         * @return the nanoseconds per operation
+         */
+        private double iteration(int time){
+            long h = 0, calls = 0;
+            long start = System.nanoTime();
+            long end = start + time * 1_000_000L;
+            long now;
+            do {
+                h += body.getAsLong();
+                calls++;
+            } while((now = System.nanoTime()) < end);
+            sink += h;
+            return (double) (now - start) / (calls * operations);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * @filename BoostingOptions.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains the options of a boosting run that aren't the
+ * examples or the number of rounds: who is told about the training, where
+ * and how often the run is checkpointed, when it stops early, and which
+ * examples the stumps are learned from
+ */
+
+import java.io.File;
+
+/**
+ * How a boosting run is watched, checkpointed, stopped and sped up. Made
+ * with a Builder, everything is off by default
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class BoostingOptions {
+
+    /** The options with everything off */
+    public static final BoostingOptions NONE = new Builder().build();
+
+    /** Told about the training */
+    private final TrainingListener listener;
+
+    /** Where the boosting state is checkpointed, null for nowhere */
+    private final File checkpoint;
+
+    /** How many rounds go between checkpoints */
+    private final int checkpointEvery;
+
+    /** A round whose vote weighs less than this stops the run */
+    private final double minAlpha;
+
+    /** Examples the ensemble is checked against after every round */
+    private final Dataset validation;
+
+    /** How many rounds the validation error can go without improving */
+    private final int patience;
+
+    /** The share of the weight the stumps are learned from, 1 for all */
+    private final double trim;
+
+    /** How many examples the stumps are learned from, 0 for all */
+    private final int sample;
+
+    /** Where the random samples start from */
+    private final long seed;
+
+    /**
+     * Create the options from a builder
+     *
+     * @param builder the builder
+     */
+    private BoostingOptions(Builder builder){
+        this.listener = builder.listener;
+        this.checkpoint = builder.checkpoint;
+        this.checkpointEvery = builder.checkpointEvery;
+        this.minAlpha = builder.minAlpha;
+        this.validation = builder.validation;
+        this.patience = builder.patience;
+        this.trim = builder.trim;
+        this.sample = builder.sample;
+        this.seed = builder.seed;
+    }
+
+    /**
+     * Get the listener told about the training
+     *
+     * @return the listener
+     */
+    TrainingListener listener(){
+        return listener;
+    }
+
+    /**
+     * Get the checkpoint file
+     *
+     * @return the file, null if the run isn't checkpointed
+     */
+    File checkpoint(){
+        return checkpoint;
+    }
+
+    /**
+     * Get how many rounds go between checkpoints
+     *
+     * @return the number of rounds
+     */
+    int checkpointEvery(){
+        return checkpointEvery;
+    }
+
+    /**
+     * Get the smallest vote weight a round can have without stopping
+     *
+     * @return the smallest alpha
+     */
+    double minAlpha(){
+        return minAlpha;
+    }
+
+    /**
+     * Get the examples the ensemble is checked against
+     *
+     * @return the validation examples, null if there are none
+     */
+    Dataset validation(){
+        return validation;
+    }
+
+    /**
+     * Get how many rounds the validation error can go without improving
+     *
+     * @return the number of rounds
+     */
+    int patience(){
+        return patience;
+    }
+
+    /**
+     * Get the share of the weight the stumps are learned from
+     *
+     * @return the share, 1 for every example
+     */
+    double trim(){
+        return trim;
+    }
+
+    /**
+     * Get how many examples are sampled to learn each stump from
+     *
+     * @return the sample size, 0 for no sampling
+     */
+    int sample(){
+        return sample;
+    }
+
+    /**
+     * Get where the random samples start from
+     *
+     * @return the seed
+     */
+    long seed(){
+        return seed;
+    }
+
+    /**
+     * Builds boosting options. Every option is off until it is set
+     */
+    public static class Builder {
+
+        /** Told about the training */
+        private TrainingListener listener = TrainingListener.NONE;
+
+        /** Where the boosting state is checkpointed */
+        private File checkpoint;
+
+        /** How many rounds go between checkpoints */
+        private int checkpointEvery;
+
+        /** A round whose vote weighs less than this stops the run */
+        private double minAlpha = Double.NEGATIVE_INFINITY;
+
+        /** Examples the ensemble is checked against after every round */
+        private Dataset validation;
+
+        /** How many rounds the validation error can go without improving */
+        private int patience;
+
+        /** The share of the weight the stumps are learned from */
+        private double trim = 1;
+
+        /** How many examples the stumps are learned from, 0 for all */
+        private int sample;
+
+        /** Where the random samples start from */
+        private long seed;
+
+        /**
+         * Tell a listener about the training
+         *
+         * @param listener the listener
+         * @return this builder
+         */
+        public Builder listener(TrainingListener listener){
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Save the boosting state every few rounds, and when the run ends,
+         * so a run that is killed can be resumed from the file
+         *
+         * @param file where to save the state
+         * @param every how many rounds go between checkpoints
+         * @return this builder
+         */
+        public Builder checkpoint(File file, int every){
+            if(every < 1)
+                throw new IllegalArgumentException("Checkpoints need at " +
+                        "least one round between them, got " + every);
+            this.checkpoint = file;
+            this.checkpointEvery = every;
+            return this;
+        }
+
+        /**
+         * Stop once a round's stump is so close to guessing that its vote
+         * weighs less than alpha. That round is still kept
+         *
+         * @param alpha the smallest vote weight to carry on after
+         * @return this builder
+         */
+        public Builder minAlpha(double alpha){
+            this.minAlpha = alpha;
+            return this;
+        }
+
+        /**
+         * Check the ensemble against held out examples after every round,
+         * and stop once their error hasn't gone down for a number of
+         * rounds. The ensemble returned stops at the round with the lowest
+         * error
+         *
+         * @param examples the held out examples
+         * @param patience how many rounds to wait for the error to go down
+         * @return this builder
+         */
+        public Builder validation(Dataset examples, int patience){
+            if(patience < 1)
+                throw new IllegalArgumentException("Patience has to be at " +
+                        "least one round, got " + patience);
+            this.validation = examples;
+            this.patience = patience;
+            return this;
+        }
+
+        /**
+         * Learn each stump from only the heaviest examples, enough of them
+         * to hold a share of the weight. Late in boosting most of the
+         * weight is on a few hard examples, so most examples are skipped.
+         * Every example still has its weight updated
+         *
+         * @param share the share of the weight to keep, in (0, 1]
+         * @return this builder
+         */
+        public Builder trim(double share){
+            if(!(share > 0 && share <= 1))
+                throw new IllegalArgumentException("The share of the " +
+                        "weight to keep has to be in (0, 1], got " + share);
+            this.trim = share;
+            return this;
+        }
+
+        /**
+         * Learn each stump from a sample of the examples drawn by weight
+         * instead of from all of them. Each round's sample comes from the
+         * seed and the round, so a resumed run draws the same samples.
+         * Every example still has its weight updated
+         *
+         * @param size how many examples to draw
+         * @param seed where the random samples start from
+         * @return this builder
+         */
+        public Builder sample(int size, long seed){
+            if(size < 1)
+                throw new IllegalArgumentException("The sample needs at " +
+                        "least one example, got " + size);
+            this.sample = size;
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Make the options
+         *
+         * @return the options
+         * @throws IllegalArgumentException if both trimming and sampling
+         *                                  are on
+         */
+        public BoostingOptions build(){
+            if(trim < 1 && sample > 0)
+                throw new IllegalArgumentException("Stumps can be learned " +
+                        "from a trimmed set or a sample, not both");
+            return new BoostingOptions(this);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * @filename BoostingState.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains everything boosting needs to carry on where it left
+ * off: the stumps and their votes so far, the weight of every example, and
+ * a hash of the examples the weights belong to. It can be saved next to a
+ * model, so more rounds or newly added examples don't mean training again
+ * from the start
+ */
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The state of a boosting run. The stumps are kept as they were learned,
+ * one per round, not compacted. The state file is big endian
+ *
+ *  u4  magic, "DTB1"
+ *  u2  version
+ *  u4  number of examples the weights are for
+ *  u1  32 byte SHA-256 hash of those examples
+ *  f8  the weight of each example
+ *  ... the ensemble so far, in the model file format
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class BoostingState {
+
+    /** The first four bytes of a state file */
+    private static final int MAGIC = 0x44544231;
+
+    /** The version written */
+    private static final int VERSION = 1;
+
+    /** How long the hash of the examples is */
+    private static final int HASH_LENGTH = 32;
+
+    /** The labels being boosted, indexed by code */
+    private final String[] classes;
+
+    /** The stump learned in each round */
+    private DecisionTree[] stumps;
+
+    /** The weight of each stump's vote */
+    private double[] alphas;
+
+    /** How many rounds have been done */
+    private int rounds;
+
+    /** The weight of every example */
+    private double[] weights;
+
+    /** The examples the weights are for, null if the state was loaded */
+    private Dataset data;
+
+    /** The hash of the examples the weights are for, null until needed */
+    private byte[] hash;
+
+    /** Why the last run stopped before its rounds were done, or null */
+    private String stopped;
+
+    /**
+     * Create a state
+     *
+     * @param classes the labels being boosted
+     * @param stumps the stumps so far
+     * @param alphas the weight of each stump's vote
+     * @param weights the weight of every example
+     */
+    private BoostingState(String[] classes, DecisionTree[] stumps,
+                          double[] alphas, double[] weights){
+        this.classes = classes;
+        this.stumps = stumps;
+        this.alphas = alphas;
+        this.rounds = stumps.length;
+        this.weights = weights;
+    }
+
+    /**
+     * The state before the first round, every example weighted the same
+     *
+     * @param data the training data
+     * @return the starting state
+     */
+    public static BoostingState start(Dataset data){
+        double[] weights = new double[data.size()];
+        Arrays.fill(weights, 1.0 / data.size());
+        BoostingState state = new BoostingState(data.classes().clone(),
+                new DecisionTree[0], new double[0], weights);
+        state.data = data;
+        return state;
+    }
+
+    /**
+     * Read a saved state
+     *
+     * @param file the state file
+     * @return the state
+     * @throws FileNotFoundException if there is no such file
+     * @throws IOException if the file can't be read or isn't a state
+     */
+    public static BoostingState load(File file) throws IOException {
+        if(!file.isFile())
+            throw new FileNotFoundException(file.toString());
+        try(FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if(buffer.remaining() < 4 || buffer.getInt() != MAGIC)
+                throw new IOException("Not a boosting state file");
+            int version = buffer.getShort() & 0xFFFF;
+            if(version != VERSION)
+                throw new IOException("Boosting state version " + version +
+                        " is not supported, expected " + VERSION);
+            int n = buffer.getInt();
+            if(n < 0 || n > buffer.remaining() / 8)
+                throw new IOException("Bad example count " + n);
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(hash);
+            double[] weights = new double[n];
+            buffer.asDoubleBuffer().get(weights);
+            buffer.position(buffer.position() + n * 8);
+
+            Hypothesis model = ModelFormat.read(buffer);
+            if(!(model instanceof Ensemble) ||
+                    ((Ensemble) model).table() != null)
+                throw new IOException("Boosting state doesn't hold the " +
+                        "stumps of an ensemble");
+            Ensemble ensemble = (Ensemble) model;
+            BoostingState state = new BoostingState(ensemble.labels(),
+                    ensemble.hypothesises(), ensemble.weights(), weights);
+            state.hash = hash;
+            return state;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Boosting state file '" + file +
+                    "' is truncated", e);
+        }
+    }
+
+    /**
+     * Write the state to a file. It is written to a temporary file of its
+     * own next to the file and moved into place, so a crash never leaves
+     * half a state and a run checkpointing to the same file can't mix in
+     *
+     * @param file the file to write
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException {
+        File temp = File.createTempFile("." + file.getName() + ".", ".tmp",
+                file.getAbsoluteFile().getParentFile());
+        try {
+            try(DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp),
+                            1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(weights.length);
+                out.write(hash());
+                for(double weight : weights)
+                    out.writeDouble(weight);
+                ModelFormat.write(ensemble(), out);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Get the state ready to boost on some examples. They have to be the
+     * examples the state was made with, maybe with more added at the end.
+     * Added examples get the weight they would have now if they had been
+     * there from the first round: every round multiplies the weight of the
+     * examples its stump gets right by e^-alpha, so the stumps are asked
+     * about them and the votes of the rounds they got right are added up
+     *
+     * @param data the training data
+     * @throws IllegalArgumentException if the examples aren't the ones the
+     *                                  state was made with
+     */
+    public void attach(Dataset data){
+        if(data == this.data)
+            return;
+        if(!Arrays.equals(data.classes(), classes))
+            throw new IllegalArgumentException("The examples have labels " +
+                    Arrays.toString(data.classes()) + " but the boosting " +
+                    "state has " + Arrays.toString(classes));
+        int old = weights.length;
+        if(data.size() < old || !Arrays.equals(hash(data, old), hash()))
+            throw new IllegalArgumentException("The first " + old +
+                    " examples are not the ones the boosting state was " +
+                    "made with");
+        if(data.size() > old)
+            absorb(data, old);
+        this.data = data;
+        this.hash = null;
+    }
+
+    /**
+     * Give weights to the examples added after the first old ones
+     *
+     * @param data the training data
+     * @param old how many examples already have weights
+     */
+    private void absorb(Dataset data, int old){
+        int n = data.size();
+        int reference = 0;
+        for(int i = 1; i < old; i++)
+            if(weights[i] > weights[reference])
+                reference = i;
+
+        // the sum of the votes of the rounds that got each example right,
+        // rounds with no error didn't change the weights
+        double[] right = new double[n];
+        for(int r = 0; r < rounds; r++){
+            if(alphas[r] == Double.MAX_VALUE)
+                continue;
+            long[] correct = stumps[r].correct(data);
+            if(old > 0 && (correct[reference >>> 6] & 1L << reference) != 0)
+                right[reference] += alphas[r];
+            for(int w = old >>> 6; w < correct.length; w++)
+                for(long bits = correct[w] & (w == old >>> 6 ? -1L << old :
+                        -1L); bits != 0; bits &= bits - 1)
+                    right[(w << 6) + Long.numberOfTrailingZeros(bits)] +=
+                            alphas[r];
+        }
+
+        // the old weights were normalized by some total, which the
+        // heaviest old example gives back as e^-right / weight. With no old
+        // examples any total will do
+        double logTotal = old == 0 ? 0 :
+                -right[reference] - Math.log(weights[reference]);
+        weights = Arrays.copyOf(weights, n);
+        for(int i = old; i < n; i++)
+            weights[i] = Math.exp(-right[i] - logTotal);
+        Utils.normalize(weights);
+    }
+
+    /**
+     * Add a round
+     *
+     * @param stump the stump learned in the round
+     * @param alpha the weight of its vote
+     */
+    void add(DecisionTree stump, double alpha){
+        if(rounds == stumps.length) {
+            stumps = Arrays.copyOf(stumps, Math.max(16, rounds * 2));
+            alphas = Arrays.copyOf(alphas, stumps.length);
+        }
+        stumps[rounds] = stump;
+        alphas[rounds++] = alpha;
+    }
+
+    /**
+     * The weight of every example, updated in place by boosting
+     *
+     * @return the weights
+     */
+    double[] weights(){
+        return weights;
+    }
+
+    /**
+     * How many rounds have been done
+     *
+     * @return the number of rounds
+     */
+    public int rounds(){
+        return rounds;
+    }
+
+    /**
+     * Check if the last round's stump got every example right. Boosting
+     * more wouldn't change anything, the weights stay the same so every
+     * round after it would learn the same stump
+     *
+     * @return true if there is no point boosting more
+     */
+    public boolean converged(){
+        return rounds > 0 && alphas[rounds - 1] == Double.MAX_VALUE;
+    }
+
+    /**
+     * Say why the run stopped early
+     *
+     * @param reason why, null if it hasn't stopped
+     */
+    void stop(String reason){
+        this.stopped = reason;
+    }
+
+    /**
+     * Why the last run stopped before doing all its rounds
+     *
+     * @return the reason, null if it did all of them
+     */
+    public String stopped(){
+        return stopped;
+    }
+
+    /**
+     * How many examples have weights
+     *
+     * @return the number of examples
+     */
+    public int examples(){
+        return weights.length;
+    }
+
+    /**
+     * The ensemble of the rounds so far, not compacted
+     *
+     * @return the ensemble
+     */
+    public Ensemble ensemble(){
+        return ensemble(rounds);
+    }
+
+    /**
+     * The ensemble of the first few rounds, not compacted
+     *
+     * @param n how many rounds
+     * @return the ensemble
+     */
+    public Ensemble ensemble(int n){
+        return new Ensemble(classes.clone(), Arrays.copyOf(stumps, n),
+                Arrays.copyOf(alphas, n), null, 0);
+    }
+
+    /**
+     * The hash of the examples the weights are for
+     *
+     * @return the hash
+     */
+    private byte[] hash(){
+        if(hash == null)
+            hash = hash(data, data.size());
+        return hash;
+    }
+
+    /**
+     * Hash the labels and features of the first n examples, and the labels
+     * they are coded with
+     *
+     * @param data the training data
+     * @param n how many examples to hash
+     * @return the hash
+     */
+    private static byte[] hash(Dataset data, int n){
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 9);
+        buffer.putInt(data.attributes());
+        digest.update(buffer.flip());
+        for(String label : data.classes()){
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            digest.update(buffer.clear().putInt(bytes.length).flip());
+            digest.update(bytes);
+        }
+
+        // turn each word of the columns back into 64 rows
+        long[] rows = new long[64];
+        for(int w = 0; w < Dataset.words(n); w++){
+            Arrays.fill(rows, 0);
+            for(int a = 0; a < data.attributes(); a++)
+                for(long bits = data.column(a)[w]; bits != 0;
+                    bits &= bits - 1)
+                    rows[Long.numberOfTrailingZeros(bits)] |= 1L << a;
+            buffer.clear();
+            for(int j = 0; j < 64 && (w << 6) + j < n; j++)
+                buffer.putLong(rows[j]).put((byte) data.code((w << 6) + j));
+            digest.update(buffer.flip());
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * @filename CompiledTree.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains a flat version of a trained decision tree for
+ * prediction. The DecisionTree and Leaf objects are compiled into parallel
+ * arrays, so asking the tree a question is a loop over array indices
+ * instead of recursing through objects
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A decision tree compiled into parallel arrays. Node 0 is the root. An
+ * inner node tests feature[n] and goes to child[n] when it is false and
+ * child[n] + 1 when it is true. A leaf has a feature of -1 and its answer is
+ * labels[code[n]]
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class CompiledTree implements Hypothesis {
+
+    /** The feature each node tests, -1 for a leaf */
+    private final int[] feature;
+
+    /** The index of the false child of each node, the true child is next */
+    private final int[] child;
+
+    /** The label code of each leaf */
+    private final byte[] code;
+
+    /** The labels the codes stand for */
+    private final String[] labels;
+
+    /**
+     * Create a compiled tree from its arrays
+     *
+     * @param feature the feature each node tests, -1 for a leaf
+     * @param child the index of the false child of each node
+     * @param code the label code of each leaf
+     * @param labels the labels the codes stand for
+     */
+    public CompiledTree(int[] feature, int[] child, byte[] code,
+                        String[] labels){
+        this.feature = feature;
+        this.child = child;
+        this.code = code;
+        this.labels = labels;
+    }
+
+    /**
+     * Compile a trained tree. The nodes are laid out breadth first so the
+     * two children of a node always sit next to each other
+     *
+     * @param tree the trained tree
+     * @return the compiled tree
+     */
+    public static CompiledTree compile(DecisionTree tree){
+        List<DecisionTree> nodes = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        Deque<DecisionTree> queue = new ArrayDeque<>();
+        queue.add(tree);
+        while(!queue.isEmpty()){
+            DecisionTree node = queue.remove();
+            nodes.add(node);
+            if(!(node instanceof Leaf)) {
+                queue.add(node.getSubtree(0));
+                queue.add(node.getSubtree(1));
+            }
+        }
+
+        int[] feature = new int[nodes.size()];
+        int[] child = new int[nodes.size()];
+        byte[] code = new byte[nodes.size()];
+        int next = 1;
+        for(int n = 0; n < nodes.size(); n++){
+            DecisionTree node = nodes.get(n);
+            if(node instanceof Leaf) {
+                String label = ((Leaf) node).getLabel();
+                if(!labels.contains(label))
+                    labels.add(label);
+                if(labels.size() > Byte.MAX_VALUE)
+                    throw new IllegalArgumentException("Too many labels to " +
+                            "compile, the most is " + Byte.MAX_VALUE);
+                feature[n] = -1;
+                code[n] = (byte) labels.indexOf(label);
+            } else {
+                feature[n] = node.getAttribute();
+                child[n] = next;
+                next += 2;
+            }
+        }
+        return new CompiledTree(feature, child, code,
+                labels.toArray(new String[0]));
+    }
+
+    /**
+     * Ask the tree a question by walking the arrays from the root
+     *
+     * @param x the list of features calculated from question
+     * @return the predicted label
+     */
+    @Override
+    public String ask(List<Boolean> x) {
+        int n = 0;
+        while(feature[n] >= 0)
+            n = child[n] + (x.get(feature[n]) ? 1 : 0);
+        return labels[code[n]];
+    }
+
+    /**
+     * The labels the leaf codes stand for
+     *
+     * @return the labels, indexed by code
+     */
+    @Override
+    public String[] labels(){
+        return labels.clone();
+    }
+
+    /**
+     * Ask the tree about every row of a block, walking the arrays once per
+     * row
+     *
+     * @param block the packed rows of features
+     * @param out filled with the code of the predicted label of each row
+     */
+    @Override
+    public void ask(FeatureBlock block, byte[] out){
+        for(int r = 0; r < block.size(); r++){
+            int n = 0;
+            while(feature[n] >= 0)
+                n = child[n] + (block.getFeature(r, feature[n]) ? 1 : 0);
+            out[r] = code[n];
+        }
+    }
+
+    /**
+     * How many nodes the tree has
+     *
+     * @return the number of nodes
+     */
+    public int size(){
+        return feature.length;
+    }
+
+    /**
+     * Pretty print the compiled tree
+     *
+     * @return the nicely formatted string
+     */
+    @Override
+    public String toString() {
+        return "CompiledTree{" +
+                "nodes=" + feature.length +
+                ", labels=" + String.join(",", labels) +
+                '}';
+    }
+}
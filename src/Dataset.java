@@ -0,0 +1,374 @@
+/*
+ * @filename Dataset.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains the training side representation of the example data.
+ * Instead of keeping a boxed list of features on every element, each
+ * attribute is stored as a column of bits packed into longs, and the labels
+ * are turned into small integer codes when the examples are loaded
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column oriented, bit packed set of training examples. Bit i of word
+ * (i / 64) in a column is the value of that attribute for example i. Every
+ * label is given a code, an index into classes(), and each class also has a
+ * packed column with the bit set for its examples
+ *
+ * The codes follow the sorted order of the labels, except Utils.NL, the
+ * label we are maximizing, which always gets the highest code. With the two
+ * labels Utils.EN and Utils.NL, Utils.NL is code 1
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class Dataset {
+
+    /** The most labels a dataset can have, codes are stored as bytes */
+    public static final int MAX_CLASSES = Byte.MAX_VALUE;
+
+    /** The packed attribute columns, columns[attr][word] */
+    private final long[][] columns;
+
+    /** The code of the label of every example */
+    private final byte[] codes;
+
+    /** The labels, indexed by code */
+    private final String[] classes;
+
+    /** The packed column of every class, masks[code][word] */
+    private final long[][] masks;
+
+    /** How many examples there are */
+    private final int size;
+
+    /**
+     * Create a new dataset from already packed columns, each column must
+     * have words(size) words
+     *
+     * @param columns the packed attribute columns
+     * @param codes the code of the label of every example
+     * @param classes the labels, indexed by code
+     * @param size how many examples are packed in the columns
+     */
+    Dataset(long[][] columns, byte[] codes, String[] classes, int size){
+        this.columns = columns;
+        this.codes = codes;
+        this.classes = classes;
+        this.size = size;
+        this.masks = new long[classes.length][words(size)];
+        for(int i = 0; i < size; i++)
+            masks[codes[i]][i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Pack a list of elements into a dataset. Every element must have the
+     * same number of features, and there can be at most MAX_CLASSES labels
+     *
+     * @param examples the list of elements to pack
+     * @return the packed dataset
+     */
+    public static Dataset fromElements(List<Element> examples){
+        Builder builder = new Builder(examples.isEmpty() ? 0 :
+                examples.get(0).getFeatures().size());
+        for(Element e : examples)
+            builder.add(e.getFeatures(), e.getLabel());
+        return builder.build();
+    }
+
+    /**
+     * Put labels in code order: sorted, with Utils.NL last
+     *
+     * @param labels the labels
+     * @return the labels, indexed by code
+     */
+    static String[] order(Collection<String> labels){
+        String[] classes = labels.toArray(new String[0]);
+        Arrays.sort(classes, (x, y) -> x.equals(y) ? 0 :
+                x.equals(Utils.NL) ? 1 : y.equals(Utils.NL) ? -1 :
+                x.compareTo(y));
+        return classes;
+    }
+
+    /**
+     * How many longs are needed to hold n bits
+     *
+     * @param n the number of bits
+     * @return the number of words
+     */
+    public static int words(int n){
+        return (n + 63) >>> 6;
+    }
+
+    /**
+     * Make a fresh array of every example index, in order. The learners
+     * partition this one array in place as they build the tree
+     *
+     * @return the array of example indices
+     */
+    public int[] indices(){
+        int[] examples = new int[size];
+        for(int i = 0; i < size; i++)
+            examples[i] = i;
+        return examples;
+    }
+
+    /**
+     * Make a bit mask with every attribute in it. The learners keep the
+     * attributes left to test in a long, so there can be at most 64
+     *
+     * @return the mask of all attributes
+     */
+    public long allAttributes(){
+        if(columns.length > 64)
+            throw new IllegalStateException("Can only learn up to 64 " +
+                    "attributes, dataset has " + columns.length);
+        return columns.length == 64 ? -1L : (1L << columns.length) - 1;
+    }
+
+    /**
+     * Get the packed column of an attribute
+     *
+     * @param attr the attribute
+     * @return the packed column, do not modify
+     */
+    public long[] column(int attr){
+        return columns[attr];
+    }
+
+    /**
+     * Get feature attr of example i
+     *
+     * @param i the example
+     * @param attr the attribute
+     * @return the value of the feature
+     */
+    public boolean getFeature(int i, int attr){
+        return (columns[attr][i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Get the code of the label of example i
+     *
+     * @param i the example
+     * @return the code, an index into classes()
+     */
+    public int code(int i){
+        return codes[i];
+    }
+
+    /**
+     * Find the code of a label
+     *
+     * @param label the label
+     * @return the code of the label, -1 if no example has it
+     */
+    public int code(String label){
+        for(int c = 0; c < classes.length; c++)
+            if(classes[c].equals(label))
+                return c;
+        return -1;
+    }
+
+    /**
+     * Get the label of example i
+     *
+     * @param i the example
+     * @return the label
+     */
+    public String getLabel(int i){
+        return classes[codes[i]];
+    }
+
+    /**
+     * Get the labels of the dataset
+     *
+     * @return the labels, indexed by code, do not modify
+     */
+    public String[] classes(){
+        return classes;
+    }
+
+    /**
+     * Get the code of the label of every example
+     *
+     * @return the codes, do not modify
+     */
+    public byte[] codes(){
+        return codes;
+    }
+
+    /**
+     * Get the packed column of a class, with the bit set for every example
+     * that has its label
+     *
+     * @param code the code of the class
+     * @return the packed column, do not modify
+     */
+    public long[] mask(int code){
+        return masks[code];
+    }
+
+    /**
+     * How many examples are in the dataset
+     *
+     * @return the number of examples
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * How many attributes each example has
+     *
+     * @return the number of attributes
+     */
+    public int attributes(){
+        return columns.length;
+    }
+
+    /**
+     * Pretty print the dataset
+     *
+     * @return the nicely formatted string
+     */
+    @Override
+    public String toString() {
+        return "Dataset{" +
+                "size=" + size +
+                ", attributes=" + columns.length +
+                ", classes=" + Arrays.toString(classes) +
+                '}';
+    }
+
+    /**
+     * Packs examples into a dataset one at a time, growing the columns as
+     * it goes. Every example must have the same number of features. Labels
+     * are given codes in the order they are first seen, and renumbered once
+     * every label is known
+     */
+    public static class Builder {
+
+        /** The packed attribute columns so far */
+        private long[][] columns;
+
+        /**
+         * The code of the label of every example so far, in seen order. The
+         * columns always have room for as many examples as this has
+         */
+        private byte[] codes;
+
+        /** The code of every label seen so far, in seen order */
+        private final Map<String, Integer> seen = new HashMap<>();
+
+        /** How many examples have been added */
+        private int size;
+
+        /**
+         * Create an empty builder
+         *
+         * @param attributes how many features each example has
+         */
+        public Builder(int attributes){
+            this.columns = new long[attributes][16];
+            this.codes = new byte[1024];
+        }
+
+        /**
+         * Add an example from a list of features
+         *
+         * @param features the list of features
+         * @param label the label of the example
+         */
+        public void add(List<Boolean> features, String label){
+            if(features.size() != columns.length)
+                throw new IllegalArgumentException("Example " + size +
+                        " has " + features.size() + " features, expected " +
+                        columns.length);
+            grow();
+            long bit = 1L << size;
+            for(int a = 0; a < columns.length; a++)
+                if(features.get(a))
+                    columns[a][size >>> 6] |= bit;
+            label(label);
+        }
+
+        /**
+         * Add an example from features packed into a long, bit a is
+         * feature a
+         *
+         * @param features the packed features
+         * @param label the label of the example
+         * @throws IllegalArgumentException if a feature past the number of
+         *                                  attributes is set
+         */
+        public void add(long features, String label){
+            if(columns.length < 64 && features >>> columns.length != 0)
+                throw new IllegalArgumentException("Example " + size +
+                        " has feature " + (63 -
+                        Long.numberOfLeadingZeros(features)) +
+                        " set, expected " + columns.length + " features");
+            grow();
+            long bit = 1L << size;
+            for(long bits = features; bits != 0; bits &= bits - 1)
+                columns[Long.numberOfTrailingZeros(bits)][size >>> 6] |= bit;
+            label(label);
+        }
+
+        /**
+         * Pack the examples added so far into a dataset
+         *
+         * @return the dataset
+         */
+        public Dataset build(){
+            long[][] packed = new long[columns.length][];
+            for(int a = 0; a < columns.length; a++)
+                packed[a] = Arrays.copyOf(columns[a], words(size));
+
+            String[] classes = order(seen.keySet());
+            byte[] renumber = new byte[classes.length];
+            for(int c = 0; c < classes.length; c++)
+                renumber[seen.get(classes[c])] = (byte) c;
+            byte[] packedCodes = new byte[size];
+            for(int i = 0; i < size; i++)
+                packedCodes[i] = renumber[codes[i]];
+            return new Dataset(packed, packedCodes, classes, size);
+        }
+
+        /**
+         * Make room for one more example
+         */
+        private void grow(){
+            if(size < codes.length)
+                return;
+            codes = Arrays.copyOf(codes, codes.length * 2);
+            for(int a = 0; a < columns.length; a++)
+                columns[a] = Arrays.copyOf(columns[a], words(codes.length));
+        }
+
+        /**
+         * Set the label of the example being added and count it
+         *
+         * @param label the label
+         */
+        private void label(String label){
+            Integer code = seen.get(label);
+            if(code == null) {
+                if(seen.size() == MAX_CLASSES)
+                    throw new IllegalArgumentException("Example " + size +
+                            " has label '" + label + "', more than " +
+                            MAX_CLASSES + " labels");
+                code = seen.size();
+                seen.put(label, code);
+            }
+            codes[size++] = (byte) (int) code;
+        }
+    }
+}
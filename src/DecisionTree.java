@@ -12,6 +12,9 @@
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A Decision tree. It has a static method that learns a set of given examples
@@ -22,12 +25,21 @@ import java.util.List;
  */
 public class DecisionTree implements Serializable, Hypothesis {
 
+    /** Keep models written before the class changed readable */
+    private static final long serialVersionUID = 8060904376058272604L;
+
     /** The list of subtrees */
     private final List<DecisionTree> subtrees;
 
     /** The question this tree checks first */
     private final int label;
 
+    /**
+     * The labels of the leaves, worked out on the first block ask instead
+     * of on every one. Cleared when a subtree is added
+     */
+    private transient volatile String[] leaves;
+
     /**
      * Create a new DecisionTree. Make it private so that only
      * the static method DecisionTree.decisionTreeLearn() can create them
@@ -50,53 +62,214 @@ public class DecisionTree implements Serializable, Hypothesis {
     /**
      * Implementation of Decision tree learning from Russel and Norvig
      *
-     * @param examples list of training examples
-     * @param attr list of attributes (just list of numbers)
-     * @param parentExamples the examples from the iteration above it
+     * @param data the training data
+     * @param attr bit mask of the attributes to learn with
      * @param depth how deep we want the tree to go
      * @return the decision tree of specified depth that learns the examples
      */
-    public static DecisionTree decisionTreeLearn(List<Element> examples,
-                                         List<Integer> attr,
-                                                 List<Element> parentExamples,
-                                                    int depth){
-        if(depth == 0)
-            return new Leaf(Utils.countMajority(examples));
-        if(examples.isEmpty())
-            return new Leaf(Utils.countMajority(parentExamples));
-        if(Utils.sameClassification(examples))
-            return new Leaf(examples.get(0).getLabel());
-        if(attr.isEmpty())
-            return new Leaf(Utils.countMajority(examples));
-
-        int mostImportant = Utils.mostImportant(examples, attr);
-        DecisionTree tree = new DecisionTree(mostImportant);
+    public static DecisionTree decisionTreeLearn(Dataset data, long attr,
+                                                 int depth){
+        return decisionTreeLearn(data, attr, depth, TrainingListener.NONE);
+    }
+
+    /**
+     * Implementation of Decision tree learning from Russel and Norvig,
+     * telling a listener about every node
+     *
+     * @param data the training data
+     * @param attr bit mask of the attributes to learn with
+     * @param depth how deep we want the tree to go
+     * @param listener told about the training
+     * @return the decision tree of specified depth that learns the examples
+     */
+    public static DecisionTree decisionTreeLearn(Dataset data, long attr,
+                                                 int depth,
+                                                 TrainingListener listener){
+        listener.started("Decision Tree", data);
+        DecisionTree tree = decisionTreeLearn(data,
+                new SplitStats(data.attributes(), data.classes().length),
+                data.indices(), 0, data.size(), attr, null, depth, listener);
+        listener.finished(tree);
+        return tree;
+    }
+
+    /**
+     * Implementation of Decision tree learning from Russel and Norvig that
+     * builds the subtrees in parallel as fork/join tasks. Nodes with fewer
+     * examples than the cutoff build their whole subtree sequentially. The
+     * tree is exactly the same as the one decisionTreeLearn makes
+     *
+     * @param data the training data
+     * @param attr bit mask of the attributes to learn with
+     * @param depth how deep we want the tree to go
+     * @param cutoff nodes with fewer examples than this are not split up
+     * @return the decision tree of specified depth that learns the examples
+     */
+    public static DecisionTree parallelDecisionTreeLearn(Dataset data,
+                                                         long attr,
+                                                         int depth,
+                                                         int cutoff){
+        return parallelDecisionTreeLearn(data, attr, depth, cutoff,
+                TrainingListener.NONE);
+    }
+
+    /**
+     * Implementation of Decision tree learning from Russel and Norvig that
+     * builds the subtrees in parallel, telling a listener about every node.
+     * The listener is called from many threads
+     *
+     * @param data the training data
+     * @param attr bit mask of the attributes to learn with
+     * @param depth how deep we want the tree to go
+     * @param cutoff nodes with fewer examples than this are not split up
+     * @param listener told about the training
+     * @return the decision tree of specified depth that learns the examples
+     */
+    public static DecisionTree parallelDecisionTreeLearn(Dataset data,
+                                                         long attr,
+                                                         int depth,
+                                                         int cutoff,
+                                                         TrainingListener
+                                                                 listener){
+        listener.started("Decision Tree", data);
+        DecisionTree tree = subtreeLearn(data, attr, depth, cutoff, listener);
+        listener.finished(tree);
+        return tree;
+    }
+
+    /**
+     * Learn a subtree of a bigger tree from the examples that reach it, in
+     * parallel. The listener is told about the nodes but not started or
+     * finished
+     *
+     * @param data the examples that reach the subtree
+     * @param attr bit mask of the attributes left to test
+     * @param depth how deep the subtree can go
+     * @param cutoff nodes with fewer examples than this are not split up
+     * @param listener told about every node
+     * @return the subtree
+     */
+    static DecisionTree subtreeLearn(Dataset data, long attr, int depth,
+                                     int cutoff, TrainingListener listener){
+        return ForkJoinPool.commonPool().invoke(new SubtreeTask(data,
+                data.indices(), 0, data.size(), attr, null, depth, cutoff,
+                listener));
+    }
 
-        // calculate examples that go into new list
-        List<Element> pExs = new ArrayList<>();
-        List<Element> nExs = new ArrayList<>();
-        List<Integer> newAttrs = new ArrayList<>();
-        List<Integer> newAttrs1 = new ArrayList<>();
-
-        for(int i : attr){
-            if(i == mostImportant)
-                continue;
-            newAttrs.add(i);
-            newAttrs1.add(i);
+    /**
+     * Implementation of Decision tree learning from Russel and Norvig. The
+     * examples at a node are a range of one shared array of example indices,
+     * which gets partitioned in place for the subtrees
+     *
+     * @param data the training data
+     * @param stats the count table to reuse for every node
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes left to test
+     * @param majority the parent's majority label, used if the node has no
+     *                 examples
+     * @param depth how deep we want the tree to go
+     * @param listener told about every node
+     * @return the decision tree of specified depth that learns the examples
+     */
+    private static DecisionTree decisionTreeLearn(Dataset data,
+                                                  SplitStats stats,
+                                                  int[] examples,
+                                                  int from, int to,
+                                                  long attr,
+                                                  String majority,
+                                                  int depth,
+                                                  TrainingListener listener){
+        long start = listener == TrainingListener.NONE ? 0 :
+                System.nanoTime();
+        DecisionTree leaf = leaf(data, examples, from, to, attr, majority,
+                depth);
+        if(leaf != null) {
+            node(listener, to - from, -1, start);
+            return leaf;
         }
 
-        for(Element e : examples)
-            if(e.getFeature(mostImportant))
-                pExs.add(e);
-            else
-                nExs.add(e);
+        int mostImportant = Utils.mostImportant(data, stats, examples, from,
+                to, attr);
+        DecisionTree tree = new DecisionTree(mostImportant);
+
+        // split the examples in place and take the attribute out
+        int split = Utils.partition(data, examples, from, to, mostImportant);
+        long newAttrs = attr & ~(1L << mostImportant);
+        node(listener, to - from, mostImportant, start);
+        String parent = majority(data, examples, from, split, to);
 
-        tree.addSubtree(decisionTreeLearn(nExs, newAttrs, examples, depth-1));
-        tree.addSubtree(decisionTreeLearn(pExs, newAttrs1, examples, depth-1));
+        tree.addSubtree(decisionTreeLearn(data, stats, examples, from, split,
+                newAttrs, parent, depth-1, listener));
+        tree.addSubtree(decisionTreeLearn(data, stats, examples, split, to,
+                newAttrs, parent, depth-1, listener));
 
         return tree;
     }
 
+    /**
+     * Tell the listener about a node, unless nothing is listening
+     *
+     * @param listener the listener
+     * @param examples how many examples reached the node
+     * @param attribute the attribute it splits on, -1 for a leaf
+     * @param start when the node was started
+     */
+    private static void node(TrainingListener listener, int examples,
+                             int attribute, long start){
+        if(listener != TrainingListener.NONE)
+            listener.node(examples, attribute, System.nanoTime() - start);
+    }
+
+    /**
+     * Check the cases where the learning stops and a leaf is made
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes left to test
+     * @param majority the parent's majority label, used if the node has no
+     *                 examples
+     * @param depth how deep we want the tree to go
+     * @return the leaf, or null if the node should be split
+     */
+    private static DecisionTree leaf(Dataset data, int[] examples,
+                                     int from, int to, long attr,
+                                     String majority, int depth){
+        if(depth == 0)
+            return new Leaf(Utils.countMajority(data, examples, from, to));
+        if(from == to)
+            return new Leaf(majority);
+        if(Utils.sameClassification(data, examples, from, to))
+            return new Leaf(data.getLabel(examples[from]));
+        if(attr == 0)
+            return new Leaf(Utils.countMajority(data, examples, from, to));
+        return null;
+    }
+
+    /**
+     * Work out a split node's majority label for its children, once its
+     * examples are partitioned and before either child is learned. Only an
+     * empty child uses it, so it is only counted when a side is empty. The
+     * parallel learner must not count it later, since the other child's
+     * task is partitioning the same range by then
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param split where the node's positive examples start
+     * @param to the last index of the node's examples, exclusive
+     * @return the majority label, or null if neither side is empty
+     */
+    private static String majority(Dataset data, int[] examples, int from,
+                                   int split, int to){
+        if(split != from && split != to)
+            return null;
+        return Utils.countMajority(data, examples, from, to);
+    }
+
     /**
      * ask the hypothesis a question
      *
@@ -112,6 +285,135 @@ public class DecisionTree implements Serializable, Hypothesis {
             return subtrees.get(0).ask(x);
     }
 
+    /**
+     * ask the hypothesis about every training example at once
+     *
+     * @param data the training data
+     * @return mask of the examples the tree gives the right label
+     */
+    public long[] correct(Dataset data){
+        long[] column = data.column(label);
+        long[] negative = subtrees.get(0).correct(data);
+        long[] positive = subtrees.get(1).correct(data);
+        for(int w = 0; w < column.length; w++)
+            negative[w] = (column[w] & positive[w])
+                    | (~column[w] & negative[w]);
+        return negative;
+    }
+
+    /**
+     * ask the hypothesis about every training example at once
+     *
+     * @param data the training data
+     * @param answer the label to look for
+     * @return mask of the examples the tree gives that label
+     */
+    public long[] answers(Dataset data, String answer){
+        long[] column = data.column(label);
+        long[] negative = subtrees.get(0).answers(data, answer);
+        long[] positive = subtrees.get(1).answers(data, answer);
+        for(int w = 0; w < column.length; w++)
+            negative[w] = (column[w] & positive[w])
+                    | (~column[w] & negative[w]);
+        return negative;
+    }
+
+    /**
+     * The labels the leaves of the tree answer with, in the order they are
+     * first found
+     *
+     * @return the labels, indexed by code
+     */
+    @Override
+    public String[] labels(){
+        List<String> labels = new ArrayList<>();
+        labels(labels);
+        return labels.toArray(new String[0]);
+    }
+
+    /**
+     * Add the labels of the leaves to a list, skipping ones already in it
+     *
+     * @param labels the list of labels found so far
+     */
+    protected void labels(List<String> labels){
+        for(DecisionTree tree : subtrees)
+            tree.labels(labels);
+    }
+
+    /**
+     * Ask the tree about every row of a block at once. The rows are split
+     * down the tree as masks, so each node looks at its column once
+     *
+     * @param block the packed rows of features
+     * @param out filled with the code of the predicted label of each row
+     */
+    @Override
+    public void ask(FeatureBlock block, byte[] out){
+        String[] labels = leaves;
+        if(labels == null)
+            leaves = labels = labels();
+        ask(block, block.all(), labels, out);
+    }
+
+    /**
+     * Ask the tree about the rows in a mask
+     *
+     * @param block the packed rows of features
+     * @param rows mask of the rows that reached this node
+     * @param labels the labels, indexed by code
+     * @param out filled with the code of the predicted label of each row
+     */
+    protected void ask(FeatureBlock block, long[] rows, String[] labels,
+                       byte[] out){
+        long[] column = block.column(label);
+        long[] positive = new long[rows.length];
+        long[] negative = new long[rows.length];
+        boolean anyPositive = false, anyNegative = false;
+        for(int w = 0; w < rows.length; w++){
+            positive[w] = rows[w] & column[w];
+            negative[w] = rows[w] & ~column[w];
+            anyPositive |= positive[w] != 0;
+            anyNegative |= negative[w] != 0;
+        }
+        if(anyNegative)
+            subtrees.get(0).ask(block, negative, labels, out);
+        if(anyPositive)
+            subtrees.get(1).ask(block, positive, labels, out);
+    }
+
+    /**
+     * Get the attribute this tree checks first
+     *
+     * @return the attribute
+     */
+    public int getAttribute(){
+        return label;
+    }
+
+    /**
+     * Get one of the subtrees, 0 for when the attribute is false and 1 for
+     * when it is true
+     *
+     * @param i which subtree
+     * @return the subtree
+     */
+    public DecisionTree getSubtree(int i){
+        return subtrees.get(i);
+    }
+
+    /**
+     * Find every attribute the tree tests
+     *
+     * @return bit mask of the attributes tested anywhere in the tree
+     */
+    public long attributes(){
+        long attributes = 1L << label;
+        for(DecisionTree tree : subtrees)
+            attributes |= tree.attributes();
+        return attributes;
+    }
+
     /**
      * Add a subtree to the list of subtrees
      *
@@ -119,6 +421,141 @@ public class DecisionTree implements Serializable, Hypothesis {
      */
     public void addSubtree(DecisionTree tree){
         subtrees.add(tree);
+        leaves = null;
+    }
+
+    /**
+     * A fork/join task that learns the subtree for one range of the shared
+     * example indices. The two subtrees work on ranges that do not overlap,
+     * so they can partition the shared array at the same time
+     */
+    private static class SubtreeTask extends RecursiveTask<DecisionTree> {
+
+        /** ForkJoinTask is Serializable, subtree tasks are never written */
+        private static final long serialVersionUID = 1L;
+
+        /** The training data */
+        private final Dataset data;
+
+        /** The shared array of example indices */
+        private final int[] examples;
+
+        /** The node's range of examples */
+        private final int from, to;
+
+        /** The parent's majority label, used if the node has no examples */
+        private final String majority;
+
+        /** Bit mask of the attributes left to test */
+        private final long attr;
+
+        /** How deep the subtree can go */
+        private final int depth;
+
+        /** Nodes with fewer examples than this are learned sequentially */
+        private final int cutoff;
+
+        /** Told about every node */
+        private final TrainingListener listener;
+
+        /**
+         * Create a task for a subtree
+         *
+         * @param data the training data
+         * @param examples the shared array of example indices
+         * @param from the first index of the node's examples, inclusive
+         * @param to the last index of the node's examples, exclusive
+         * @param attr bit mask of the attributes left to test
+         * @param majority the parent's majority label, used if the node has
+         *                 no examples
+         * @param depth how deep we want the tree to go
+         * @param cutoff nodes with fewer examples are not split up
+         * @param listener told about every node
+         */
+        private SubtreeTask(Dataset data, int[] examples, int from, int to,
+                            long attr, String majority, int depth,
+                            int cutoff,
+                            TrainingListener listener){
+            this.data = data;
+            this.examples = examples;
+            this.from = from;
+            this.to = to;
+            this.attr = attr;
+            this.majority = majority;
+            this.depth = depth;
+            this.cutoff = cutoff;
+            this.listener = listener;
+        }
+
+        /**
+         * Learn the subtree, forking the negative side and learning the
+         * positive side on this thread
+         *
+         * @return the learned subtree
+         */
+        @Override
+        protected DecisionTree compute() {
+            SplitStats stats = new SplitStats(data.attributes(),
+                    data.classes().length);
+            if(to - from < cutoff)
+                return decisionTreeLearn(data, stats, examples, from, to,
+                        attr, majority, depth, listener);
+
+            long start = listener == TrainingListener.NONE ? 0 :
+                    System.nanoTime();
+            DecisionTree leaf = leaf(data, examples, from, to, attr,
+                    majority, depth);
+            if(leaf != null) {
+                node(listener, to - from, -1, start);
+                return leaf;
+            }
+
+            int mostImportant = Utils.mostImportant(data, stats, examples,
+                    from, to, attr);
+            DecisionTree tree = new DecisionTree(mostImportant);
+            int split = Utils.partition(data, examples, from, to,
+                    mostImportant);
+            long newAttrs = attr & ~(1L << mostImportant);
+            node(listener, to - from, mostImportant, start);
+            String parent = majority(data, examples, from, split, to);
+
+            SubtreeTask negative = new SubtreeTask(data, examples, from,
+                    split, newAttrs, parent, depth-1, cutoff, listener);
+            SubtreeTask positive = new SubtreeTask(data, examples, split, to,
+                    newAttrs, parent, depth-1, cutoff, listener);
+            negative.fork();
+            DecisionTree p = positive.compute();
+            tree.addSubtree(negative.join());
+            tree.addSubtree(p);
+            return tree;
+        }
+    }
+
+    /**
+     * Two trees are equal if they test the same attributes in the same
+     * places and give the same answers
+     *
+     * @param o the object to compare with
+     * @return true if the trees are the same
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(o == null || getClass() != o.getClass())
+            return false;
+        DecisionTree tree = (DecisionTree) o;
+        return label == tree.label && Objects.equals(subtrees, tree.subtrees);
+    }
+
+    /**
+     * Hash the tree from its structure
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(subtrees, label);
     }
 
     /**
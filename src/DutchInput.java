@@ -24,14 +24,8 @@ import java.util.*;
  */
 public class DutchInput implements InputProcessor {
 
-    /** Set that contains dutch pronouns */
-    private Set<String> pronouns;
-
-    /** Set that contains dutch to be conjugation */
-    private Set<String> toBe;
-
-    /** Set that contains dutch to have conjugation */
-    private Set<String> toHave;
+    /** Finds every feature of a line in one pass */
+    private final PatternMatcher matcher;
 
     /** File path to file containing dutch pronouns */
     private static final String PRONOUN_PATH =
@@ -86,6 +80,33 @@ public class DutchInput implements InputProcessor {
     /** Indefinite article check */
     private static final String EEN = "een";
 
+    /** Feature for a dutch pronoun anywhere in the line */
+    private static final int PRONOUNS = 0;
+
+    /** Feature for the word de or het */
+    private static final int DEFINITE = 1;
+
+    /** Feature for weird consecutive letters */
+    private static final int WEIRD = 2;
+
+    /** Feature for double letters */
+    private static final int DOUBLE = 3;
+
+    /** Feature for the word een */
+    private static final int INDEFINITE = 4;
+
+    /** Feature for a conjugation of to be */
+    private static final int TO_BE = 5;
+
+    /** Feature for a conjugation of to have */
+    private static final int TO_HAVE = 6;
+
+    /** How many features there are */
+    private static final int FEATURES = 7;
+
+    /** The version of the feature code, bump it when the features change */
+    private static final int VERSION = 1;
+
     /**
      * Create an input processor for the language files
      * in the format of
@@ -93,24 +114,32 @@ public class DutchInput implements InputProcessor {
      * " [en|nl] | [a-zA-Z0-1]*"
      */
     public DutchInput(){
-        loadPronouns();
-        loadVerbs();
+        PatternMatcher.Builder builder = new PatternMatcher.Builder();
+        loadPronouns(builder);
+        loadVerbs(builder);
+        builder.word(DE, DEFINITE).word(HET, DEFINITE)
+                .word(EEN, INDEFINITE);
+        for(String letters : new String[]{VR, JN, JK, JF})
+            builder.substring(letters, WEIRD);
+        for(String letters : new String[]{AA, EE, OO, LL, KK, NN, GG})
+            builder.substring(letters, DOUBLE);
+        this.matcher = builder.build();
     }
 
     /**
-     * Load the verbs into sets
+     * Load the verbs as words to match
+     *
+     * @param builder the matcher being built
      */
-    private void loadVerbs(){
-        this.toBe = new HashSet<>();
-        this.toHave = new HashSet<>();
+    private void loadVerbs(PatternMatcher.Builder builder){
         try(
                 Scanner toBeScanner = new Scanner(new File(TO_BE_PATH));
                 Scanner toHaveScanner = new Scanner(new File(TO_HAVE_PATH))
                 ){
             while(toBeScanner.hasNext())
-                toBe.add(toBeScanner.nextLine());
+                builder.word(toBeScanner.nextLine(), TO_BE);
             while(toHaveScanner.hasNext())
-                toHave.add(toHaveScanner.nextLine());
+                builder.word(toHaveScanner.nextLine(), TO_HAVE);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
             System.exit(0);
@@ -118,13 +147,14 @@ public class DutchInput implements InputProcessor {
     }
 
     /**
-     * Get the pronouns from the pronouns file
+     * Get the pronouns from the pronouns file as substrings to match
+     *
+     * @param builder the matcher being built
      */
-    private void loadPronouns(){
-        this.pronouns = new HashSet<>();
+    private void loadPronouns(PatternMatcher.Builder builder){
         try(Scanner s = new Scanner(new File(PRONOUN_PATH))){
             while(s.hasNext())
-                this.pronouns.add(s.nextLine());
+                builder.substring(s.nextLine(), PRONOUNS);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
             System.exit(0);
@@ -164,124 +194,54 @@ public class DutchInput implements InputProcessor {
      * @return the feature vector
      */
     public List<Boolean> getFeatures(String line){
-        String[] lineSplit = line.split(" ");
-        // calculate attributes
-        boolean hasPronouns = containsDutchPronouns(line);
-        boolean hasDefiniteArticles = containsDutchDefiniteArticles(lineSplit);
-        boolean hasWeirdLetters = weirdConsecutiveLetters(line);
-        boolean hasDoubleLetters = doubleLetters(line);
-        boolean hasIndefiniteArticle = dutchIndefiniteArticle(lineSplit);
-        boolean hasToBe = dutchToBe(lineSplit);
-        boolean hasToHave = dutchToHave(lineSplit);
-
-        // make list of attributes
-        List<Boolean> features = new ArrayList<>();
-        features.add(hasPronouns);
-        features.add(hasDefiniteArticles);
-        features.add(hasWeirdLetters);
-        features.add(hasDoubleLetters);
-        features.add(hasIndefiniteArticle);
-        features.add(hasToBe);
-        features.add(hasToHave);
-
+        long bits = getFeatureBits(line);
+        List<Boolean> features = new ArrayList<>(FEATURES);
+        for(int f = 0; f < FEATURES; f++)
+            features.add((bits & (1L << f)) != 0);
         return features;
     }
 
     /**
-     * Check to see if the words contain the dutch conjugation of the
-     * verb to be
-     *
-     * @param line the example data
-     * @return true if contained, false if not
-     */
-    private boolean dutchToBe(String[] line){
-        for(String word : line)
-            if(toBe.contains(word))
-                return true;
-        return false;
-    }
-
-    /**
-     * Check to see if the words contain the dutch conjugation of the
-     * verb to have
+     * Find the features of a line packed into a long. The pronouns and
+     * letter pairs can be anywhere in the line, the articles and verbs have
+     * to be whole words between spaces. The line is only read once
      *
-     * @param line the example data
-     * @return true if contained, false if not
-     */
-    private boolean dutchToHave(String[] line){
-        for(String word : line )
-            if(toHave.contains(word))
-                return true;
-        return false;
-    }
-
-    /**
-     * Check to see if the indefinite article 'een' is contained
-     *
-     * @param line the example data
-     * @return true if contained, false if not
-     */
-    private boolean dutchIndefiniteArticle(String[] line){
-        for(String word : line)
-            if(word.equals(EEN))
-                return true;
-        return false;
-    }
-
-    /**
-     * Check to see if there are any double vowels contained within the work
-     * this is a weaker check, although a lot of dutch words contain double
-     * vowels. Especially 'aa'
-     *
-     * @param line the example data
-     * @return true if it contains double vowels, false if not
+     * @param line the line to get features from
+     * @return bit f is set if feature f is true
      */
-    private boolean doubleLetters(String line){
-        return line.contains(AA) || line.contains(EE) || line.contains(OO)
-                || line.contains(LL) || line.contains(KK) ||line.contains(NN)
-                || line.contains(GG);
+    @Override
+    public long getFeatureBits(String line){
+        return matcher.match(line);
     }
 
     /**
-     * Check to see if there are weird letters next to each other like
-     * "vr", "jn", "jk", or "jf"
+     * How many features each line has
      *
-     * @param line the line of example data
-     * @return true if contained, false if not
+     * @return the number of features
      */
-    private boolean weirdConsecutiveLetters(String line){
-        return line.contains(VR)
-                || line.contains(JN)
-                || line.contains(JK)
-                || line.contains(JF);
+    @Override
+    public int features(){
+        return FEATURES;
     }
 
     /**
-     * Check to see if the dutch definite articles "de" and "het" are contained
-     * within the line from the example data
+     * The version of the feature code
      *
-     * @param line the example data
-     * @return true if contained, false if not
+     * @return the version
      */
-    private boolean containsDutchDefiniteArticles(String[] line){
-        for(String word : line)
-            if(word.equals(HET))
-                return true;
-            else if(word.equals(DE))
-                return true;
-        return false;
+    @Override
+    public int version(){
+        return VERSION;
     }
 
     /**
-     * Check to see if the line contains dutch pronouns
+     * The word lists the features are worked out from
      *
-     * @param line the line of text to check for pronouns
-     * @return true if contains dutch pronouns, false if not
+     * @return the pronoun, to be and to have files
      */
-    private boolean containsDutchPronouns(String line){
-        boolean hasPronouns = false;
-        for(String pronoun : this.pronouns)
-            hasPronouns = hasPronouns || line.contains(pronoun);
-        return hasPronouns;
+    @Override
+    public List<File> dataFiles(){
+        return List.of(new File(PRONOUN_PATH), new File(TO_BE_PATH),
+                new File(TO_HAVE_PATH));
     }
 }
@@ -5,9 +5,13 @@
  *
  * Description:
  *  This file contains an implementation of AdaBoost algorithm. Using
- * decision stumps as the weak learning algorithm.
+ * decision stumps as the weak learning algorithm. With more than two labels
+ * it uses the SAMME form of AdaBoost, which is the same as the plain one
+ * when there are two
  */
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 
@@ -21,6 +25,9 @@ import java.util.*;
  */
 public class Ensemble implements Serializable, Hypothesis {
 
+    /** Keep models written before the class changed readable */
+    private static final long serialVersionUID = 5661580745193639202L;
+
     /** The array of weights */
     private final double[] weights;
 
@@ -30,132 +37,503 @@ public class Ensemble implements Serializable, Hypothesis {
     /** prevent divide by zero error */
     private static final double EPSILON = 0.00000001;
 
-    public static HashMap<Integer, Integer> count = new HashMap<>();
+    /** The labels of ensembles saved before the labels were kept */
+    private static final String[] LEGACY = {Utils.EN, Utils.NL};
+
+    /** The most attributes compact() will precompute a lookup table for */
+    private static final int TABLE_LIMIT = 16;
+
+    /**
+     * The labels the ensemble answers with, indexed by code. Null for
+     * ensembles saved before it was kept, which answer Utils.EN or Utils.NL
+     */
+    private final String[] classes;
+
+    /**
+     * The thresholded answer for every combination of the attributes the
+     * stumps test, bit set when the answer is label 1. Null if there is no
+     * table
+     */
+    private final long[] table;
+
+    /** How many attributes make up an index into the table */
+    private final int tableAttributes;
+
+    /**
+     * The code in classes() of each of every stump's answers, -1 if it
+     * isn't one of them, worked out on the first block ask
+     */
+    private transient volatile int[][] answers;
 
     /**
      * Create a new Ensemble, private so that you can only the adaboostLearn
      * algorithm can create a new one
      *
+     * @param classes the labels the ensemble answers with
      * @param hypothesises the array of hypothesises
      * @param weights the array associative array of weights
      */
-    private Ensemble(DecisionTree[] hypothesises, double[] weights ){
+    private Ensemble(String[] classes, DecisionTree[] hypothesises,
+                     double[] weights ){
+        this(classes, hypothesises, weights, null, 0);
+    }
+
+    /**
+     * Create a new Ensemble with a lookup table of its answers
+     *
+     * @param classes the labels the ensemble answers with, null for
+     *                Utils.EN and Utils.NL
+     * @param hypothesises the array of hypothesises
+     * @param weights the array associative array of weights
+     * @param table the answer for every combination of attributes, or null
+     * @param tableAttributes how many attributes index the table
+     */
+    Ensemble(String[] classes, DecisionTree[] hypothesises, double[] weights,
+             long[] table, int tableAttributes){
+        this.classes = classes;
         this.hypothesises = hypothesises;
         this.weights = weights;
+        this.table = table;
+        this.tableAttributes = tableAttributes;
     }
 
     /**
      * An implementation of the AdaBoost algorithm from Russel & Norvig
      *
-     * @param examples The training examples
+     * @param data The training examples
      * @param K how many iterations to do
-     * @param attr the list of attributes
+     * @param attr bit mask of the attributes to learn with
      * @return the Ensemble of hypothesises
      */
-    public static Ensemble adaboostLearn(List<Element> examples, int K,
-                                         List<Integer> attr){
-        double[] w = new double[examples.size()];
-        Arrays.fill(w, 1.0 / examples.size());
-        DecisionTree[] h = new DecisionTree[K];
-        double[] z = new double[K];
-        Arrays.fill(z, 0);
-        int N = examples.size();
+    public static Ensemble adaboostLearn(Dataset data, int K, long attr){
+        return adaboostLearn(data, K, attr, TrainingListener.NONE);
+    }
 
-        for(int k = 0; k < K; k++) {
-            h[k] = stumpLearn(examples, attr, examples, w, 1);
-            double error = 0;
+    /**
+     * An implementation of the AdaBoost algorithm from Russel & Norvig,
+     * telling a listener about every round. With K labels a stump's vote
+     * gets log(K - 1) more weight and the examples it gets right are
+     * scaled down K - 1 times more, so it only has to beat guessing
+     *
+     * @param data The training examples
+     * @param K how many iterations to do
+     * @param attr bit mask of the attributes to learn with
+     * @param listener told about the training
+     * @return the Ensemble of hypothesises
+     */
+    public static Ensemble adaboostLearn(Dataset data, int K, long attr,
+                                         TrainingListener listener){
+        return adaboostLearn(data, BoostingState.start(data), K, attr,
+                listener);
+    }
+
+    /**
+     * Carry on boosting from a state, running K more rounds. The state can
+     * be from an earlier run on the same examples, or on the same examples
+     * with more added at the end. The state is updated with the new rounds
+     * and weights, so it can be saved and carried on from again. Boosting
+     * K1 rounds and then K2 more gives the same ensemble as K1 + K2 rounds
+     * at once
+     *
+     * @param data The training examples
+     * @param state where boosting left off, updated in place
+     * @param K how many more iterations to do
+     * @param attr bit mask of the attributes to learn with
+     * @param listener told about the training
+     * @return the Ensemble of every round so far
+     * @throws IllegalArgumentException if the state isn't for the examples
+     */
+    public static Ensemble adaboostLearn(Dataset data, BoostingState state,
+                                         int K, long attr,
+                                         TrainingListener listener){
+        return adaboostLearn(data, state, K, attr,
+                new BoostingOptions.Builder().listener(listener).build());
+    }
 
-            for (int j = 0; j < N; j++) {
-                List<Boolean> features = examples.get(j).getFeatures();
-                String expected = examples.get(j).getLabel();
+    /**
+     * Carry on boosting from a state, running up to K more rounds, with
+     * checkpoints and early stopping. The run stops before K rounds when a
+     * stump gets every example right, since the weights wouldn't change
+     * and every round after it would be the same, or when one of the
+     * stopping rules in the options says so. The state says why. Unless
+     * the examples are trimmed or sampled, each round is counted a
+     * FeatureFile chunk at a time like StreamingLearner, so the ensemble is
+     * the same one it makes from a feature file
+     *
+     * @param data The training examples
+     * @param state where boosting left off, updated in place
+     * @param K the most iterations to do
+     * @param attr bit mask of the attributes to learn with
+     * @param options the listener, checkpoints and stopping rules
+     * @return the Ensemble of every round so far, or of the rounds up to
+     *         the lowest validation error if there are validation examples
+     * @throws IllegalArgumentException if the state isn't for the examples
+     */
+    public static Ensemble adaboostLearn(Dataset data, BoostingState state,
+                                         int K, long attr,
+                                         BoostingOptions options){
+        TrainingListener listener = options.listener();
+        listener.started("AdaBoost", data);
+        boolean timed = listener != TrainingListener.NONE;
+        state.attach(data);
+        state.stop(null);
+        double[] w = state.weights();
+        int N = data.size();
+        int[] examples = data.indices();
+        int classes = data.classes().length;
+        SplitStats stats = new SplitStats(data.attributes(), classes);
+        SplitStats round = new SplitStats(data.attributes(), classes);
+        Validation validation = options.validation() == null ? null :
+                new Validation(options.validation(), state);
+        double[] ones = null;
+        if(options.sample() > 0) {
+            ones = new double[N];
+            Arrays.fill(ones, 1);
+        }
+        int saved = state.rounds();
 
-                if (!h[k].ask(features).equals(expected))
-                    error += w[j];
+        for(int k = 0; k < K; k++) {
+            if(state.converged()) {
+                state.stop("round " + state.rounds() + " had no " +
+                        "training error");
+                break;
             }
+            long start = timed ? System.nanoTime() : 0;
+            DecisionTree h;
+            double wrong = 0, total = 0;
+            long[] correct;
+            if(options.trim() < 1 || options.sample() > 0 || attr == 0) {
+                if(options.trim() < 1) {
+                    int[] heaviest = trim(w, options.trim());
+                    h = stumpLearn(data, stats, heaviest, 0, heaviest.length,
+                            attr, w, 1);
+                } else if(options.sample() > 0) {
+                    int[] drawn = sample(w, options.sample(),
+                            new Random(options.seed() + state.rounds())
+                                    .nextDouble());
+                    h = stumpLearn(data, stats, drawn, 0, drawn.length,
+                            attr, ones, 1);
+                } else {
+                    h = stumpLearn(data, stats, examples, 0, N, attr, w, 1);
+                }
 
+                // ask the stump about every example once, keep what it got
+                // right
+                correct = h.correct(data);
+                for (int j = 0; j < N; j++) {
+                    total += w[j];
+                    if ((correct[j >>> 6] & (1L << j)) == 0)
+                        wrong += w[j];
+                }
+            } else {
+                count(data, examples, attr, w, stats, round);
+                h = StreamingLearner.stump(data.classes(), round, attr, null);
+                if(h == null)
+                    h = StreamingLearner.stump(data.classes(), round, attr,
+                            last(data, round.best(attr)));
+                wrong = StreamingLearner.wrong(data.classes(), round, h);
+                total = round.total();
+                correct = h.correct(data);
+            }
+
+            double error = wrong / total;
+            double z;
             if(error != 0) {
+                double factor = error / (1.0 - error) / (classes - 1);
+                double scale = (total - wrong) * factor + wrong;
                 for (int j = 0; j < N; j++) {
-                    List<Boolean> features = examples.get(j).getFeatures();
-                    String expected = examples.get(j).getLabel();
-                    if (h[k].ask(features).equals(expected)) {
-                        w[j] = w[j] * (error / (1.0 - error));
-                    }
+                    if ((correct[j >>> 6] & (1L << j)) != 0)
+                        w[j] *= factor;
+                    w[j] /= scale;
                 }
-                Utils.normalize(w);
-                z[k] = Math.log((1.0 - error)/error);
+                z = Math.log((1.0 - error)/error) + Math.log(classes - 1);
             } else {
-                z[k] = Double.MAX_VALUE;
+                z = Double.MAX_VALUE;
+            }
+            state.add(h, z);
+            if(timed)
+                listener.round(state.rounds() - 1, h, error, z,
+                        System.nanoTime() - start);
+
+            if(options.checkpoint() != null &&
+                    state.rounds() % options.checkpointEvery() == 0) {
+                checkpoint(state, options.checkpoint());
+                saved = state.rounds();
+            }
+            if(z < options.minAlpha()) {
+                state.stop("round " + state.rounds() + " had alpha " + z +
+                        ", below " + options.minAlpha());
+                break;
             }
+            if(validation != null) {
+                validation.add(h, z, state.rounds());
+                if(state.rounds() - validation.bestRounds >=
+                        options.patience()) {
+                    state.stop("the validation error was lowest at round " +
+                            validation.bestRounds + " and hasn't gone " +
+                            "down for " + options.patience() + " rounds");
+                    break;
+                }
+            }
+        }
+        if(options.checkpoint() != null && saved != state.rounds())
+            checkpoint(state, options.checkpoint());
+        Ensemble ensemble = validation == null ? state.ensemble() :
+                state.ensemble(validation.bestRounds);
+        listener.finished(ensemble);
+        return ensemble;
+    }
+
+    /**
+     * Find the heaviest examples that hold at least a share of the weight.
+     * The weights are put in buckets by their power of two in one pass, and
+     * whole buckets are kept from the heaviest down, so nothing is sorted
+     * and a little more than the share can be kept
+     *
+     * @param weights the weight of every example
+     * @param share the share of the weight to keep
+     * @return the kept examples, in order
+     */
+    static int[] trim(double[] weights, double share){
+        int offset = 1 - Double.MIN_EXPONENT;
+        double[] buckets = new double[Double.MAX_EXPONENT + offset + 1];
+        double total = 0;
+        for(double weight : weights){
+            buckets[Math.getExponent(weight) + offset] += weight;
+            total += weight;
+        }
+        int lowest = buckets.length - 1;
+        for(double sum = buckets[lowest]; sum < share * total && lowest > 0;
+            sum += buckets[lowest])
+            lowest--;
+
+        int n = 0;
+        int[] kept = new int[weights.length];
+        for(int i = 0; i < weights.length; i++)
+            if(Math.getExponent(weights[i]) + offset >= lowest)
+                kept[n++] = i;
+        return Arrays.copyOf(kept, n);
+    }
+
+    /**
+     * Draw a sample of the examples, each with a chance in proportion to
+     * its weight. The draws are evenly spaced through the running total of
+     * the weights from a random start, so it takes one pass and a heavy
+     * example can be drawn more than once
+     *
+     * @param weights the weight of every example
+     * @param size how many examples to draw
+     * @param start where in the first space the draws start, in [0, 1)
+     * @return the drawn examples, in order
+     */
+    static int[] sample(double[] weights, int size, double start){
+        double total = 0;
+        for(double weight : weights)
+            total += weight;
+        double step = total / size, next = start * step, sum = 0;
+        int n = 0;
+        int[] drawn = new int[size];
+        for(int i = 0; i < weights.length && n < size; i++){
+            sum += weights[i];
+            for(; n < size && next < sum; next += step)
+                drawn[n++] = i;
+        }
+        // rounding can leave the last draws past the total
+        while(n < size)
+            drawn[n++] = weights.length - 1;
+        return drawn;
+    }
+
+    /**
+     * Fill a round's weighted table a FeatureFile chunk at a time, adding
+     * up the chunks' tables in chunk order like StreamingLearner does, so
+     * the stumps and errors come out the same bit for bit
+     *
+     * @param data the training data
+     * @param examples the example indices, in order
+     * @param attr bit mask of the attributes to count
+     * @param weights the weight of every example in the training data
+     * @param part the table of one chunk
+     * @param round the table of the round, filled
+     */
+    private static void count(Dataset data, int[] examples, long attr,
+                              double[] weights, SplitStats part,
+                              SplitStats round){
+        round.reset(attr, true);
+        for(int from = 0; from < data.size(); from += FeatureFile.CHUNK){
+            part.count(data, examples, from, Math.min(data.size(),
+                    from + FeatureFile.CHUNK), attr, weights);
+            round.add(part, attr);
         }
-        return new Ensemble(h, z);
     }
 
     /**
-     * A weak learning algorithm to make decision tree stumps
+     * Find the last example of each label on each side of an attribute, to
+     * break a tie between the heaviest labels of a stump's side
      *
-     * @param examples the training data
-     * @param attr the list of attributes
-     * @param weights the list of weights
+     * @param data the training data
+     * @param attribute the attribute
+     * @return last[feature][code], -1 if there is none
+     */
+    private static int[][] last(Dataset data, int attribute){
+        int[][] last = new int[2][data.classes().length];
+        for(int[] side : last)
+            Arrays.fill(side, -1);
+        StreamingLearner.last(data, 0, attribute, last);
+        return last;
+    }
+
+    /**
+     * Save a checkpoint of a boosting run. Failing to save is only a
+     * warning, the run carries on
+     *
+     * @param state the boosting state
+     * @param file where to save it
+     */
+    private static void checkpoint(BoostingState state, File file){
+        try {
+            state.save(file);
+        } catch (IOException e) {
+            System.err.printf("Ensemble: could not checkpoint to '%s', " +
+                    "%s\n", file, e);
+        }
+    }
+
+    /**
+     * A weak learning algorithm to make decision tree stumps. The examples
+     * at a node are a range of one shared array of example indices, which
+     * gets partitioned in place for the subtrees. The parent examples are
+     * always the whole range [0, N)
+     *
+     * @param data the training data
+     * @param stats the count table to reuse for every node
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes left to test
+     * @param weights the weight of every example in the training data
+     * @param depth how deep we want the stump to go
      * @return the weighted decision stump
      */
-    public static DecisionTree stumpLearn(List<Element> examples,
-                                          List<Integer> attr,
-                                          List<Element> parentExamples,
+    public static DecisionTree stumpLearn(Dataset data,
+                                          SplitStats stats,
+                                          int[] examples,
+                                          int from, int to,
+                                          long attr,
                                           double[] weights,
                                           int depth) {
         // limit the depth
         if(depth == 0)
-            return new Leaf(Utils.countMajority(examples, weights));
+            return new Leaf(Utils.countMajority(data, examples, from, to,
+                    weights));
 
         // no examples left, return most abundant label of examples
-        if(examples.isEmpty())
-            return new Leaf(Utils.countMajority(parentExamples, weights));
+        if(from == to)
+            return new Leaf(Utils.countMajority(data, examples, 0,
+                    examples.length, weights));
 
         // if all examples are the same label, return that label
-        if(Utils.sameClassification(examples))
-            return new Leaf(examples.get(0).getLabel());
+        if(Utils.sameClassification(data, examples, from, to))
+            return new Leaf(data.getLabel(examples[from]));
 
         // if there are no attributes to test, return most abundant label in
         // examples
-        if(attr.isEmpty())
-            return new Leaf(Utils.countMajority(examples, weights));
+        if(attr == 0)
+            return new Leaf(Utils.countMajority(data, examples, from, to,
+                    weights));
 
         // Get best attribute
-        int mostImportant = Utils.mostImportant(examples, attr, weights);
-        if(count.containsKey(mostImportant))
-            count.put(mostImportant, count.get(mostImportant) + 1);
-        else
-            count.put(mostImportant, 1);
-
+        int mostImportant = Utils.mostImportant(data, stats, examples, from,
+                to, attr, weights);
         DecisionTree tree = new DecisionTree(mostImportant);
 
-        // calculate examples that go into new list
-        List<Element> pExs = new ArrayList<>();
-        List<Element> nExs = new ArrayList<>();
-        List<Integer> newAttrs = new ArrayList<>();
-        List<Integer> newAttrs1 = new ArrayList<>();
+        // split the examples in place and take the attribute out
+        int split = Utils.partition(data, examples, from, to, mostImportant);
+        long newAttrs = attr & ~(1L << mostImportant);
 
-        // Create new list of attributes
-        for(int i : attr){
-            if(i == mostImportant)
-                continue;
-            newAttrs.add(i);
-            newAttrs1.add(i);
-        }
+        // create subtrees
+        tree.addSubtree(stumpLearn(data, stats, examples, from, split,
+                newAttrs, weights, depth-1));
+        tree.addSubtree(stumpLearn(data, stats, examples, split, to,
+                newAttrs, weights, depth-1));
 
-        // split elements based on attribute
-        for(Element e : examples)
-            if(e.getFeature(mostImportant))
-                pExs.add(e);
-            else
-                nExs.add(e);
+        return tree;
+    }
 
-        // create subtrees
-        tree.addSubtree(stumpLearn(nExs, newAttrs, parentExamples,
-                weights, depth-1));
-        tree.addSubtree(stumpLearn(pExs, newAttrs1, parentExamples,
-                weights, depth-1));
+    /**
+     * Compact the ensemble after training. Identical stumps are merged into
+     * one by adding up their weights, and if the stumps only test a few
+     * attributes and there are two labels, the answer for every combination
+     * of them is worked out ahead of time, so asking is one lookup. Answers
+     * only change when the vote is within rounding error of a tie
+     *
+     * @return the compacted ensemble
+     */
+    public Ensemble compact(){
+        Map<DecisionTree, Double> merged = new LinkedHashMap<>();
+        for(int i = 0; i < hypothesises.length; i++)
+            merged.merge(hypothesises[i], weights[i], Double::sum);
+
+        DecisionTree[] h = merged.keySet().toArray(new DecisionTree[0]);
+        double[] z = new double[h.length];
+        long attributes = 0;
+        int i = 0;
+        for(double weight : merged.values())
+            z[i++] = weight;
+        for(DecisionTree tree : h)
+            attributes |= tree.attributes();
+
+        String[] labels = classes();
+        Ensemble compacted = new Ensemble(classes, h, z);
+        int n = 64 - Long.numberOfLeadingZeros(attributes);
+        if(n > TABLE_LIMIT || labels.length != 2)
+            return compacted;
+
+        // ask every combination of the attributes once
+        long[] table = new long[Dataset.words(1 << n)];
+        List<Boolean> x = new ArrayList<>(Collections.nCopies(n, false));
+        for(int index = 0; index < 1 << n; index++){
+            for(int a = 0; a < n; a++)
+                x.set(a, (index & (1 << a)) != 0);
+            if(compacted.ask(x).equals(labels[1]))
+                table[index >>> 6] |= 1L << index;
+        }
+        return new Ensemble(classes, h, z, table, n);
+    }
 
+    /**
+     * Turn the lookup table of a compacted ensemble into a decision tree
+     * that gives the same answers. Attributes that don't change the answer
+     * below a node are not tested
+     *
+     * @return the equivalent tree, null if the ensemble has no table
+     */
+    public DecisionTree toTree(){
+        if(table == null)
+            return null;
+        String[] labels = classes();
+        return toTree(0, 0, new Leaf(labels[1]), new Leaf(labels[0]));
+    }
+
+    /**
+     * Build the part of the tree where attributes below a are already known
+     *
+     * @param a the next attribute to test
+     * @param index the table index made from the attributes known so far
+     * @param one the leaf for label 1
+     * @param zero the leaf for label 0
+     * @return the subtree
+     */
+    private DecisionTree toTree(int a, int index, Leaf one, Leaf zero){
+        if(a == tableAttributes)
+            return (table[index >>> 6] & (1L << index)) != 0 ? one : zero;
+        DecisionTree negative = toTree(a + 1, index, one, zero);
+        DecisionTree positive = toTree(a + 1, index | 1 << a, one, zero);
+        if(negative.equals(positive))
+            return negative;
+        DecisionTree tree = new DecisionTree(a);
+        tree.addSubtree(negative);
+        tree.addSubtree(positive);
         return tree;
     }
 
@@ -167,31 +545,301 @@ public class Ensemble implements Serializable, Hypothesis {
      */
     @Override
     public String ask(List<Boolean> x) {
-        double guess = 0;
-        String tempLabel;
+        String[] labels = classes();
+        if(table != null) {
+            int index = 0;
+            for(int a = 0; a < tableAttributes; a++)
+                if(x.get(a))
+                    index |= 1 << a;
+            return labels[(int) ((table[index >>> 6] >>> index) & 1)];
+        }
+
+        if(labels.length == 2) {
+            double guess = 0;
+            for(int i = 0; i < weights.length; i++){
+                int code = code(labels, hypothesises[i].ask(x));
+                if(code == 1){
+                    guess += weights[i];
+                } else if(code == 0){
+                    guess -= weights[i];
+                }
+            }
+            return labels[threshold(guess)];
+        }
+
+        double[] votes = new double[labels.length];
         for(int i = 0; i < weights.length; i++){
-            tempLabel = hypothesises[i].ask(x);
-            if(tempLabel.equalsIgnoreCase(Utils.NL)){
-                guess += weights[i];
-            } else if(tempLabel.equalsIgnoreCase(Utils.EN)){
-                guess -= weights[i];
+            int code = code(labels, hypothesises[i].ask(x));
+            if(code >= 0)
+                votes[code] += weights[i];
+        }
+        return labels[vote(votes, 0, labels.length)];
+    }
+
+    /**
+     * Ask the ensemble about every row of a block at once. With a lookup
+     * table each row is one lookup, without one every stump answers for the
+     * whole block and the votes are added up per row
+     *
+     * @param block the packed rows of features
+     * @param out filled with the code of the predicted label of each row,
+     *            an index into labels()
+     */
+    @Override
+    public void ask(FeatureBlock block, byte[] out) {
+        int n = block.size();
+        if(table != null) {
+            for(int r = 0; r < n; r++){
+                int index = 0;
+                for(int a = 0; a < tableAttributes; a++)
+                    if(block.getFeature(r, a))
+                        index |= 1 << a;
+                out[r] = (byte) ((table[index >>> 6] >>> index) & 1);
             }
+            return;
         }
-        return threshold(guess);
+
+        String[] labels = classes();
+        int k = labels.length;
+        boolean binary = k == 2;
+        double[] guess = new double[binary ? n : n * k];
+        byte[] codes = new byte[n];
+        int[][] answers = this.answers;
+        if(answers == null)
+            this.answers = answers = answers(labels);
+        for(int i = 0; i < weights.length; i++){
+            // what each of the stump's answers is a vote for
+            int[] to = answers[i];
+            double[] vote = new double[to.length];
+            for(int c = 0; c < to.length; c++)
+                if(binary && to[c] >= 0)
+                    vote[c] = to[c] == 1 ? weights[i] : -weights[i];
+            hypothesises[i].ask(block, codes);
+            if(binary) {
+                for(int r = 0; r < n; r++)
+                    guess[r] += vote[codes[r]];
+            } else {
+                for(int r = 0; r < n; r++)
+                    if(to[codes[r]] >= 0)
+                        guess[r * k + to[codes[r]]] += weights[i];
+            }
+        }
+        for(int r = 0; r < n; r++)
+            out[r] = (byte) (binary ? threshold(guess[r]) :
+                    vote(guess, r * k, k));
+    }
+
+    /**
+     * Work out which of the ensemble's labels each stump's answers are
+     *
+     * @param labels the labels of the ensemble, indexed by code
+     * @return answers[stump][code of the stump's answer], -1 if it isn't
+     *         one of the labels
+     */
+    private int[][] answers(String[] labels){
+        int[][] answers = new int[hypothesises.length][];
+        for(int i = 0; i < hypothesises.length; i++){
+            String[] stump = hypothesises[i].labels();
+            answers[i] = new int[stump.length];
+            for(int c = 0; c < stump.length; c++)
+                answers[i][c] = code(labels, stump[c]);
+        }
+        return answers;
+    }
+
+    /**
+     * The labels the ensemble answers with
+     *
+     * @return the labels, indexed by code
+     */
+    @Override
+    public String[] labels(){
+        return classes().clone();
+    }
+
+    /**
+     * The labels the ensemble answers with, without copying them
+     *
+     * @return the labels, indexed by code, do not modify
+     */
+    private String[] classes(){
+        return classes == null ? LEGACY : classes;
+    }
+
+    /**
+     * The stumps of the ensemble
+     *
+     * @return the stumps, do not modify
+     */
+    DecisionTree[] hypothesises(){
+        return hypothesises;
+    }
+
+    /**
+     * The weight of each stump's vote
+     *
+     * @return the weights, do not modify
+     */
+    double[] weights(){
+        return weights;
+    }
+
+    /**
+     * The lookup table made by compact()
+     *
+     * @return the table, null if there is none, do not modify
+     */
+    long[] table(){
+        return table;
+    }
+
+    /**
+     * How many attributes make up an index into the lookup table
+     *
+     * @return the number of attributes
+     */
+    int tableAttributes(){
+        return tableAttributes;
     }
 
     /**
      * The threshold function that determines what the label is based
-     * on the guess
+     * on the guess when there are two labels
      *
-     * @param guess the sum of the guesses
-     * @return the label associates with the weights
+     * @param guess the sum of the guesses, label 1 is positive
+     * @return the code of the label associated with the weights
      */
-    private String threshold(double guess){
+    private static int threshold(double guess){
         if(guess >= 0)
-            return Utils.NL;
+            return 1;
         else
-            return Utils.EN;
+            return 0;
+    }
+
+    /**
+     * Pick the label with the most votes when there are more than two
+     * labels. Ties go to the higher code, like threshold()
+     *
+     * @param votes the votes
+     * @param from where the vote for label 0 is
+     * @param k how many labels there are
+     * @return the code of the winning label
+     */
+    private static int vote(double[] votes, int from, int k){
+        int best = 0;
+        for(int c = 1; c < k; c++)
+            if(votes[from + c] >= votes[from + best])
+                best = c;
+        return best;
+    }
+
+    /**
+     * Find the code of one of the ensemble's labels
+     *
+     * @param labels the ensemble's labels
+     * @param label the label to find
+     * @return the code, -1 if the ensemble doesn't answer with it
+     */
+    private static int code(String[] labels, String label){
+        for(int c = 0; c < labels.length; c++)
+            if(labels[c].equals(label))
+                return c;
+        return -1;
+    }
+
+    /**
+     * Keeps the answers of the ensemble so far on held out examples, adding
+     * each round's vote as it comes, in the same order asking the ensemble
+     * adds them up
+     */
+    private static class Validation {
+
+        /** The held out examples */
+        private final Dataset data;
+
+        /** The labels being boosted, indexed by code */
+        private final String[] classes;
+
+        /** The code of each example's label, -1 if it isn't being boosted */
+        private final int[] truth;
+
+        /**
+         * The votes so far, one per example with two labels and one per
+         * example and label with more
+         */
+        private final double[] votes;
+
+        /** The fewest examples the ensemble has got wrong */
+        private int best = Integer.MAX_VALUE;
+
+        /** How many rounds the ensemble had when it got the fewest wrong */
+        private int bestRounds;
+
+        /**
+         * Start checking against held out examples, adding the votes of
+         * the rounds the state already has
+         *
+         * @param data the held out examples
+         * @param state the boosting state
+         */
+        private Validation(Dataset data, BoostingState state){
+            this.data = data;
+            Ensemble ensemble = state.ensemble();
+            this.classes = ensemble.labels();
+            this.truth = new int[data.size()];
+            for(int i = 0; i < truth.length; i++)
+                truth[i] = code(classes, data.getLabel(i));
+            this.votes = new double[classes.length == 2 ? data.size() :
+                    data.size() * classes.length];
+            score(0);
+            for(int r = 0; r < ensemble.hypothesises.length; r++)
+                add(ensemble.hypothesises[r], ensemble.weights[r], r + 1);
+        }
+
+        /**
+         * Add a round's vote and count the examples the ensemble gets wrong
+         *
+         * @param stump the round's stump
+         * @param alpha the weight of its vote
+         * @param rounds how many rounds the ensemble has with this one
+         */
+        private void add(DecisionTree stump, double alpha, int rounds){
+            int k = classes.length;
+            for(String answer : stump.labels()){
+                int to = code(classes, answer);
+                if(to < 0)
+                    continue;
+                long[] mask = stump.answers(data, answer);
+                for(int w = 0; w < mask.length; w++)
+                    for(long bits = mask[w]; bits != 0; bits &= bits - 1){
+                        int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        if(k == 2)
+                            votes[i] += to == 1 ? alpha : -alpha;
+                        else
+                            votes[i * k + to] += alpha;
+                    }
+            }
+            score(rounds);
+        }
+
+        /**
+         * Count the examples the ensemble gets wrong and keep the best
+         *
+         * @param rounds how many rounds the ensemble has
+         */
+        private void score(int rounds){
+            int k = classes.length, wrong = 0;
+            for(int i = 0; i < truth.length; i++){
+                int answer = k == 2 ? threshold(votes[i]) :
+                        vote(votes, i * k, k);
+                if(answer != truth[i])
+                    wrong++;
+            }
+            if(wrong < best) {
+                best = wrong;
+                bestRounds = rounds;
+            }
+        }
     }
 
     /**
@@ -202,8 +850,10 @@ public class Ensemble implements Serializable, Hypothesis {
     @Override
     public String toString() {
         return "Ensemble{" +
-                "weights=" + Arrays.toString(weights) +
+                "classes=" + Arrays.toString(classes()) +
+                ", weights=" + Arrays.toString(weights) +
                 ", hypothesises=" + Arrays.toString(hypothesises) +
+                ", tableAttributes=" + tableAttributes +
                 '}';
     }
 }
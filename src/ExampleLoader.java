@@ -0,0 +1,348 @@
+/*
+ * @filename ExampleLoader.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file loads an examples file straight into a training Dataset. The
+ * file is memory mapped and cut into chunks that end on line boundaries,
+ * and the chunks are parsed in parallel, either into one Dataset or handed
+ * out one example at a time for files too big to hold. Lines that are plain
+ * ASCII are lowercased and split on '|' byte by byte, without regex or
+ * copying the whole line through toLowerCase
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads example files formatted as '[label]|[words]' one per line, the same
+ * way DutchInput.createElement reads them
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class ExampleLoader {
+
+    /** The most bytes in one chunk, a mapping can't be over 2GB */
+    private static final long MAX_CHUNK = 1L << 28;
+
+    /** The fewest bytes in one chunk so small files aren't cut up */
+    private static final long MIN_CHUNK = 1L << 16;
+
+    /** The most bytes in one chunk when streaming, to bound memory */
+    private static final long STREAM_CHUNK = 1L << 24;
+
+    /** Finds the features of the words on each line */
+    private final InputProcessor inputProcessor;
+
+    /**
+     * Create a loader
+     *
+     * @param inputProcessor finds the features of the words on each line,
+     *                       it is shared by all the chunks
+     */
+    public ExampleLoader(InputProcessor inputProcessor){
+        this.inputProcessor = inputProcessor;
+    }
+
+    /**
+     * Load an examples file into a dataset. Lines with nothing but
+     * whitespace are skipped
+     *
+     * @param file the examples file
+     * @return the examples packed into a dataset, in file order
+     * @throws IOException if the file can't be read or a line is malformed
+     */
+    public Dataset load(Path file) throws IOException {
+        Dataset.Builder builder = new Dataset.Builder(
+                inputProcessor.features());
+        if(stream(file, MAX_CHUNK, builder::add) == 0)
+            return new Dataset.Builder(0).build();
+        return builder.build();
+    }
+
+    /**
+     * Read an examples file one example at a time, without keeping them.
+     * Only a few chunks of STREAM_CHUNK bytes are parsed at once, so any
+     * size of file can be read in bounded memory
+     *
+     * @param file the examples file
+     * @param sink given every example, in file order
+     * @return how many examples there were
+     * @throws IOException if the file can't be read, a line is malformed
+     *                     or the sink fails
+     */
+    public long stream(Path file, Sink sink) throws IOException {
+        return stream(file, STREAM_CHUNK, sink);
+    }
+
+    /**
+     * Parse the chunks of a file across the common pool and hand the
+     * examples to a sink in file order. At most a few chunks per worker are
+     * parsed ahead of the sink
+     *
+     * @param file the examples file
+     * @param maxChunk the most bytes in one chunk
+     * @param sink given every example, in file order
+     * @return how many examples there were
+     * @throws IOException if the file can't be read, a line is malformed
+     *                     or the sink fails
+     */
+    private long stream(Path file, long maxChunk, Sink sink)
+            throws IOException {
+        try(FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            int window = Math.max(2, pool.getParallelism() * 2);
+            Deque<Future<Chunk>> parsing = new ArrayDeque<>();
+            Iterator<long[]> ranges = split(channel, maxChunk).iterator();
+            long n = 0;
+            while(ranges.hasNext() || !parsing.isEmpty()){
+                while(ranges.hasNext() && parsing.size() < window) {
+                    long[] range = ranges.next();
+                    MappedByteBuffer buffer = channel.map(
+                            FileChannel.MapMode.READ_ONLY, range[0],
+                            range[1] - range[0]);
+                    parsing.add(pool.submit((Callable<Chunk>) () ->
+                            parse(buffer)));
+                }
+
+                // hand the next chunk over in file order
+                Chunk chunk = parsing.remove().get();
+                for(int i = 0; i < chunk.size; i++)
+                    sink.add(chunk.features[i],
+                            chunk.names.get(chunk.labels[i]));
+                n += chunk.size;
+            }
+            return n;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted loading " + file, e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Could not load " + file, e.getCause());
+        }
+    }
+
+    /**
+     * Cut the file into chunks that each end right after a newline
+     *
+     * @param channel the open file
+     * @param maxChunk the most bytes in one chunk, unless a line is longer
+     * @return the [start, end) of each chunk
+     * @throws IOException if the file can't be read
+     */
+    private static List<long[]> split(FileChannel channel, long maxChunk)
+            throws IOException {
+        long size = channel.size();
+        int parts = ForkJoinPool.getCommonPoolParallelism() * 4;
+        long target = Math.min(maxChunk, Math.max(MIN_CHUNK,
+                size / parts + 1));
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while(start < size){
+            long end = Math.min(size, start + target);
+            // move the end up to just after the next newline
+            while(end < size){
+                probe.clear();
+                int n = channel.read(probe, end);
+                int i = 0;
+                while(i < n && probe.get(i) != '\n')
+                    i++;
+                end += i;
+                if(i < n) {
+                    end++;
+                    break;
+                }
+            }
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Parse every line in a chunk
+     *
+     * @param buffer the mapped chunk
+     * @return the parsed examples
+     * @throws IOException if a line is malformed
+     */
+    private Chunk parse(MappedByteBuffer buffer) throws IOException {
+        Chunk chunk = new Chunk();
+        byte[] line = new byte[256];
+        int limit = buffer.limit();
+        int start = 0;
+        while(start < limit){
+            int end = start;
+            while(end < limit && buffer.get(end) != '\n')
+                end++;
+            int next = end + 1;
+            if(end > start && buffer.get(end - 1) == '\r')
+                end--;
+
+            // copy the line lowercased, noting if it is all ASCII
+            int length = end - start;
+            if(line.length < length)
+                line = new byte[Math.max(length, line.length * 2)];
+            boolean ascii = true, blank = true;
+            for(int i = 0; i < length; i++){
+                byte b = buffer.get(start + i);
+                if(b < 0)
+                    ascii = false;
+                else if(b >= 'A' && b <= 'Z')
+                    b += 'a' - 'A';
+                if(b > ' ' || b < 0)
+                    blank = false;
+                line[i] = b;
+            }
+            if(!blank) {
+                if(ascii)
+                    chunk.add(line, length, inputProcessor);
+                else
+                    chunk.add(new String(line, 0, length,
+                            Charset.defaultCharset()).toLowerCase(),
+                            inputProcessor);
+            }
+            start = next;
+        }
+        return chunk;
+    }
+
+    /**
+     * The examples parsed from one chunk, with the features packed into a
+     * long per example and the labels as codes into a small list of names
+     */
+    private static class Chunk {
+
+        /** The packed features of each example */
+        private long[] features = new long[1024];
+
+        /** The label code of each example */
+        private byte[] labels = new byte[1024];
+
+        /** The labels the codes stand for */
+        private final List<String> names = new ArrayList<>();
+
+        /** How many features each example has */
+        private int attributes = -1;
+
+        /** How many examples were parsed */
+        private int size;
+
+        /**
+         * Add a lowercased ASCII line. The label is everything before the
+         * first '|' and the words are everything up to the next '|'
+         *
+         * @param line the line bytes
+         * @param length how many bytes of the line are used
+         * @param inputProcessor finds the features of the words
+         * @throws IOException if the line has no '|' or no words
+         */
+        private void add(byte[] line, int length,
+                         InputProcessor inputProcessor) throws IOException {
+            int bar = 0;
+            while(bar < length && line[bar] != '|')
+                bar++;
+            int end = bar + 1;
+            while(end < length && line[end] != '|')
+                end++;
+            if(bar >= length - 1)
+                throw malformed(new String(line, 0, length,
+                        StandardCharsets.ISO_8859_1));
+            add(new String(line, 0, bar, StandardCharsets.ISO_8859_1),
+                    new String(line, bar + 1, end - bar - 1,
+                            StandardCharsets.ISO_8859_1),
+                    inputProcessor);
+        }
+
+        /**
+         * Add a lowercased line that isn't plain ASCII
+         *
+         * @param line the line
+         * @param inputProcessor finds the features of the words
+         * @throws IOException if the line has no '|' or no words
+         */
+        private void add(String line, InputProcessor inputProcessor)
+                throws IOException {
+            String[] split = line.split("\\|");
+            if(split.length < 2)
+                throw malformed(line);
+            add(split[0], split[1], inputProcessor);
+        }
+
+        /**
+         * Find the features of the words and add the example
+         *
+         * @param label the label
+         * @param words the words
+         * @param inputProcessor finds the features of the words
+         */
+        private void add(String label, String words,
+                         InputProcessor inputProcessor){
+            long bits = inputProcessor.getFeatureBits(words);
+            if(attributes < 0)
+                attributes = inputProcessor.features();
+
+            int code = names.indexOf(label);
+            if(code < 0 && names.size() == Byte.MAX_VALUE)
+                throw new IllegalArgumentException("Too many labels, the " +
+                        "most is " + Byte.MAX_VALUE);
+            if(code < 0) {
+                names.add(label);
+                code = names.size() - 1;
+            }
+            if(size == features.length) {
+                features = Arrays.copyOf(features, size * 2);
+                labels = Arrays.copyOf(labels, size * 2);
+            }
+            features[size] = bits;
+            labels[size] = (byte) code;
+            size++;
+        }
+
+        /**
+         * Make the error for a line that isn't '[label]|[words]'
+         *
+         * @param line the line
+         * @return the error
+         */
+        private static IOException malformed(String line){
+            return new IOException("Malformed example line '" + line + "'");
+        }
+    }
+
+    /**
+     * Takes the examples of a file as they are read
+     */
+    public interface Sink {
+
+        /**
+         * Take one example
+         *
+         * @param features the packed features, bit a is feature a
+         * @param label the label of the example
+         * @throws IOException if the example can't be kept
+         */
+        void add(long features, String label) throws IOException;
+    }
+}
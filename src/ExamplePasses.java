@@ -0,0 +1,82 @@
+/*
+ * @filename ExamplePasses.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file defines the passes the streaming learners make over examples
+ * that aren't in memory. A pass can read a feature file a chunk at a time,
+ * or be handed out to worker processes that each hold some of the chunks
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Passes over training examples cut into FeatureFile chunks. Whatever makes
+ * the pass, each chunk has to go through StreamingLearner's chunk code and
+ * the chunks' tables have to be added up in chunk order, so the learners
+ * choose the same splits and stumps no matter where the examples are
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+interface ExamplePasses extends Closeable {
+
+    /**
+     * How many examples there are
+     *
+     * @return the number of examples
+     */
+    int size();
+
+    /**
+     * How many attributes each example has
+     *
+     * @return the number of attributes
+     */
+    int attributes();
+
+    /**
+     * Get the labels of the examples
+     *
+     * @return the labels, indexed by code, do not modify
+     */
+    String[] classes();
+
+    /**
+     * Send every example down the tree so far, counting the ones that
+     * reach a node being counted and keeping the ones that reach a node
+     * being held, in example order
+     *
+     * @param root the root of the tree so far
+     * @param counted the nodes being counted in this pass
+     * @throws IOException if the pass fails
+     */
+    void count(StreamingLearner.Node root, List<StreamingLearner.Node> counted)
+            throws IOException;
+
+    /**
+     * Apply the last round's weight update to every example and add each
+     * chunk's weighted table to the round's, in chunk order
+     *
+     * @param last the last round's stump, null before the first round
+     * @param factor what the weights of correct examples are multiplied by
+     * @param scale what every weight is then divided by
+     * @param attr bit mask of the attributes to count
+     * @param round the table of the round, added to
+     * @throws IOException if the pass fails
+     */
+    void boost(DecisionTree last, double factor, double scale, long attr,
+               SplitStats round) throws IOException;
+
+    /**
+     * Find the last example of each label on each side of an attribute
+     *
+     * @param attribute the attribute
+     * @return last[feature][code], -1 if there is none
+     * @throws IOException if the pass fails
+     */
+    int[][] last(int attribute) throws IOException;
+}
@@ -0,0 +1,159 @@
+/*
+ * @filename FeatureBlock.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains a block of feature vectors packed by column for
+ * asking a hypothesis about many lines at once. Each feature is a column of
+ * bits packed into longs, the same as the training Dataset
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reusable block of feature vectors. Bit r of word (r / 64) in a column
+ * is the value of that feature for row r
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class FeatureBlock {
+
+    /** The packed feature columns, columns[feature][word] */
+    private final long[][] columns;
+
+    /** The most rows the block can hold */
+    private final int capacity;
+
+    /** How many rows are in the block */
+    private int size;
+
+    /**
+     * Create an empty block
+     *
+     * @param features how many features each row has
+     * @param capacity the most rows the block can hold
+     */
+    public FeatureBlock(int features, int capacity){
+        if(features > 64)
+            throw new IllegalArgumentException("Rows are packed into a " +
+                    "long, so there can be at most 64 features");
+        this.columns = new long[features][Dataset.words(capacity)];
+        this.capacity = capacity;
+    }
+
+    /**
+     * Add a row from a list of features
+     *
+     * @param x the list of features
+     */
+    public void add(List<Boolean> x){
+        long bits = 0;
+        for(int f = 0; f < columns.length; f++)
+            if(x.get(f))
+                bits |= 1L << f;
+        add(bits);
+    }
+
+    /**
+     * Add a row from features packed into a long, bit f is feature f
+     *
+     * @param bits the packed features
+     */
+    public void add(long bits){
+        if(size == capacity)
+            throw new IllegalStateException("Block is full, it holds " +
+                    capacity + " rows");
+        int word = size >>> 6;
+        long bit = 1L << size;
+        for(int f = 0; f < columns.length; f++)
+            if((bits & (1L << f)) != 0)
+                columns[f][word] |= bit;
+        size++;
+    }
+
+    /**
+     * Empty the block so it can be filled again
+     */
+    public void clear(){
+        for(long[] column : columns)
+            Arrays.fill(column, 0, Dataset.words(size), 0);
+        size = 0;
+    }
+
+    /**
+     * Get a feature of a row
+     *
+     * @param r the row
+     * @param f the feature
+     * @return the value of the feature
+     */
+    public boolean getFeature(int r, int f){
+        return (columns[f][r >>> 6] & (1L << r)) != 0;
+    }
+
+    /**
+     * Get the packed column of a feature
+     *
+     * @param f the feature
+     * @return the packed column, do not modify
+     */
+    public long[] column(int f){
+        return columns[f];
+    }
+
+    /**
+     * Unpack a row back into a list of features
+     *
+     * @param r the row
+     * @return the list of features
+     */
+    public List<Boolean> row(int r){
+        Boolean[] x = new Boolean[columns.length];
+        for(int f = 0; f < x.length; f++)
+            x[f] = getFeature(r, f);
+        return Arrays.asList(x);
+    }
+
+    /**
+     * Make a mask with every row in the block in it
+     *
+     * @return the mask of all rows
+     */
+    public long[] all(){
+        long[] mask = new long[Dataset.words(size)];
+        Arrays.fill(mask, -1L);
+        if((size & 63) != 0)
+            mask[mask.length - 1] = (1L << size) - 1;
+        return mask;
+    }
+
+    /**
+     * Check if the block can't take any more rows
+     *
+     * @return true if the block is full
+     */
+    public boolean isFull(){
+        return size == capacity;
+    }
+
+    /**
+     * How many rows are in the block
+     *
+     * @return the number of rows
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * How many features each row has
+     *
+     * @return the number of features
+     */
+    public int features(){
+        return columns.length;
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * @filename FeatureCache.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file keeps the packed features of an examples file in a sidecar
+ * file next to it. The cache is keyed by a hash of the examples file and of
+ * the data files the features come from, so as long as neither changes the
+ * examples don't have to be parsed again. The cache can also be written
+ * without ever holding all the examples, for training on files too big for
+ * memory
+ */
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads examples through a cache file named after the examples file with
+ * ".features" on the end. Everything is big endian
+ *
+ *  u4  magic, "DTF1"
+ *  u2  version
+ *  u1  32 byte SHA-256 key
+ *  u4  number of examples
+ *  u2  number of attributes
+ *  u1  number of labels, then each label as a u2 byte length and UTF-8
+ *      bytes, in code order
+ *  u1  the label code of each example
+ *  s8  each attribute column, words(n) words each
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class FeatureCache {
+
+    /** The first four bytes of a cache file */
+    static final int MAGIC = 0x44544631;
+
+    /** The version written */
+    static final int VERSION = 2;
+
+    /** What is added to the examples file name to name the cache */
+    private static final String SUFFIX = ".features";
+
+    /** How many bytes of a file are hashed at once */
+    private static final long HASH_CHUNK = 1L << 26;
+
+    /** How many words of each column are gathered before they are written */
+    private static final int COLUMN_BLOCK = 1 << 10;
+
+    /** Finds the features of the lines */
+    private final InputProcessor inputProcessor;
+
+    /**
+     * Create a cache
+     *
+     * @param inputProcessor finds the features of the lines
+     */
+    public FeatureCache(InputProcessor inputProcessor){
+        this.inputProcessor = inputProcessor;
+    }
+
+    /**
+     * Load an examples file, from its cache if the cache is up to date and
+     * otherwise by parsing it and writing a new cache. Failing to write
+     * the cache is only a warning
+     *
+     * @param examples the examples file
+     * @return the examples packed into a dataset, in file order
+     * @throws IOException if the examples can't be read
+     */
+    public Dataset load(Path examples) throws IOException {
+        byte[] key = key(examples);
+        Path cache = cacheFile(examples);
+        Dataset data = read(cache, key);
+        if(data != null)
+            return data;
+
+        data = new ExampleLoader(inputProcessor).load(examples);
+        try {
+            write(cache, key, data);
+        } catch (IOException e) {
+            System.err.printf("FeatureCache: could not write '%s', %s\n",
+                    cache, e);
+        }
+        return data;
+    }
+
+    /**
+     * Open the cache of an examples file to be read a chunk at a time,
+     * writing it first if it isn't up to date. The examples are never all
+     * held in memory, they go through a temporary file of rows that is
+     * turned into columns
+     *
+     * @param examples the examples file
+     * @return the open cache
+     * @throws IOException if the examples can't be read or the cache can't
+     *                     be written
+     */
+    public FeatureFile stream(Path examples) throws IOException {
+        byte[] key = key(examples);
+        Path cache = cacheFile(examples);
+        if(Files.isRegularFile(cache)) {
+            FeatureFile file = FeatureFile.open(cache, key);
+            if(file != null)
+                return file;
+        }
+        write(examples, cache, key);
+        FeatureFile file = FeatureFile.open(cache, key);
+        if(file == null)
+            throw new IOException("Cache '" + cache + "' was just written " +
+                    "but can't be read");
+        return file;
+    }
+
+    /**
+     * The cache file of an examples file
+     *
+     * @param examples the examples file
+     * @return the cache file next to it
+     */
+    public static Path cacheFile(Path examples){
+        return examples.resolveSibling(examples.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Hash everything the features depend on: the examples, the data files
+     * of the input processor, and which input processor and version of it
+     * it is
+     *
+     * @param examples the examples file
+     * @return the key
+     * @throws IOException if a file can't be read
+     */
+    private byte[] key(Path examples) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(inputProcessor.getClass().getName()
+                .getBytes(StandardCharsets.UTF_8));
+        digest.update(ByteBuffer.allocate(8).putInt(
+                inputProcessor.features()).putInt(inputProcessor.version())
+                .flip());
+        hash(examples, digest);
+        for(File file : inputProcessor.dataFiles())
+            hash(file.toPath(), digest);
+        return digest.digest();
+    }
+
+    /**
+     * Add a file's length and contents to a hash
+     *
+     * @param file the file
+     * @param digest the hash
+     * @throws IOException if the file can't be read
+     */
+    private static void hash(Path file, MessageDigest digest)
+            throws IOException {
+        try(FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(8).putLong(size).flip());
+            for(long at = 0; at < size; at += HASH_CHUNK)
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, at,
+                        Math.min(HASH_CHUNK, size - at)));
+        }
+    }
+
+    /**
+     * Read the cache if it is there and has the right key
+     *
+     * @param cache the cache file
+     * @param key the key the cache has to have
+     * @return the cached dataset, null if there is no good cache
+     */
+    private static Dataset read(Path cache, byte[] key){
+        if(!Files.isRegularFile(cache))
+            return null;
+        try(FileChannel channel = FileChannel.open(cache,
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if(buffer.getInt() != MAGIC ||
+                    (buffer.getShort() & 0xFFFF) != VERSION)
+                return null;
+            byte[] cached = new byte[key.length];
+            buffer.get(cached);
+            if(!Arrays.equals(cached, key))
+                return null;
+
+            int size = buffer.getInt();
+            int attributes = buffer.getShort() & 0xFFFF;
+            String[] classes = new String[buffer.get() & 0xFF];
+            for(int c = 0; c < classes.length; c++){
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                classes[c] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int words = Dataset.words(size);
+            if(size < 0 || size + (long) words * attributes * 8 !=
+                    buffer.remaining())
+                return null;
+            byte[] codes = new byte[size];
+            buffer.get(codes);
+            for(byte code : codes)
+                if(code < 0 || code >= classes.length)
+                    return null;
+            long[][] columns = new long[attributes][words];
+            for(long[] column : columns){
+                buffer.asLongBuffer().get(column);
+                buffer.position(buffer.position() + words * 8);
+            }
+            return new Dataset(columns, codes, classes, size);
+        } catch (IOException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the cache straight from the examples file. The examples are
+     * written as rows of a long of features and a byte of label code to a
+     * temporary file of this run's own, since the labels have to be known
+     * to number them and the count has to be known to place the columns.
+     * The rows are then read back twice, once for the codes and once to
+     * turn them into columns a block of words at a time
+     *
+     * @param examples the examples file
+     * @param cache the cache file
+     * @param key the key of the examples
+     * @throws IOException if the examples can't be read or the cache can't
+     *                     be written
+     */
+    private void write(Path examples, Path cache, byte[] key)
+            throws IOException {
+        Path rows = temp(cache, ".rows");
+        Path temp = null;
+        try {
+            Map<String, Integer> seen = new HashMap<>();
+            long size;
+            try(DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(rows),
+                            1 << 16))) {
+                size = new ExampleLoader(inputProcessor).stream(examples,
+                        (features, label) -> {
+                    Integer code = seen.get(label);
+                    if(code == null) {
+                        if(seen.size() == Dataset.MAX_CLASSES)
+                            throw new IOException("Label '" + label +
+                                    "' is one more than the most, " +
+                                    Dataset.MAX_CLASSES);
+                        code = seen.size();
+                        seen.put(label, code);
+                    }
+                    out.writeLong(features);
+                    out.writeByte(code);
+                });
+            }
+            if(size > Integer.MAX_VALUE)
+                throw new IOException("Too many examples, " + size);
+            int n = (int) size;
+            int attributes = n == 0 ? 0 : inputProcessor.features();
+            String[] classes = Dataset.order(seen.keySet());
+            byte[] renumber = new byte[classes.length];
+            for(int c = 0; c < classes.length; c++)
+                renumber[seen.get(classes[c])] = (byte) c;
+
+            temp = temp(cache, ".tmp");
+            try(FileChannel out = FileChannel.open(temp,
+                    StandardOpenOption.WRITE)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream header = new DataOutputStream(bytes);
+                header(header, key, n, attributes, classes);
+                writeFully(out, ByteBuffer.wrap(bytes.toByteArray()), 0);
+                long codesAt = bytes.size();
+                writeCodes(rows, out, codesAt, n, renumber);
+                writeColumns(rows, out, codesAt + n, n, attributes);
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(rows);
+            if(temp != null)
+                Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copy the label codes out of the rows, numbered in code order
+     *
+     * @param rows the file of rows
+     * @param out the cache being written
+     * @param at where the codes go
+     * @param n how many examples there are
+     * @param renumber the code of each label by the order it was seen in
+     * @throws IOException if a file can't be read or written
+     */
+    private static void writeCodes(Path rows, FileChannel out, long at,
+                                   int n, byte[] renumber)
+            throws IOException {
+        ByteBuffer codes = ByteBuffer.allocate(1 << 16);
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(rows), 1 << 16))) {
+            for(int i = 0; i < n; i++){
+                in.readLong();
+                codes.put(renumber[in.readByte()]);
+                if(!codes.hasRemaining() || i == n - 1) {
+                    at += writeFully(out, codes.flip(), at);
+                    codes.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Turn the rows into columns. The words of every column are gathered a
+     * block at a time and each column's block is written where it goes
+     *
+     * @param rows the file of rows
+     * @param out the cache being written
+     * @param at where the columns go
+     * @param n how many examples there are
+     * @param attributes how many attributes each example has
+     * @throws IOException if a file can't be read or written
+     */
+    private static void writeColumns(Path rows, FileChannel out, long at,
+                                     int n, int attributes)
+            throws IOException {
+        int words = Dataset.words(n);
+        long[][] block = new long[attributes][COLUMN_BLOCK];
+        ByteBuffer buffer = ByteBuffer.allocate(COLUMN_BLOCK * 8);
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(rows), 1 << 16))) {
+            for(int first = 0; first < words; first += COLUMN_BLOCK){
+                int count = Math.min(COLUMN_BLOCK, words - first);
+                for(long[] column : block)
+                    Arrays.fill(column, 0, count, 0);
+                int end = Math.min(n, (first + count) << 6);
+                for(int i = first << 6; i < end; i++){
+                    long bit = 1L << i;
+                    for(long bits = in.readLong(); bits != 0;
+                        bits &= bits - 1)
+                        block[Long.numberOfTrailingZeros(bits)]
+                                [(i >>> 6) - first] |= bit;
+                    in.readByte();
+                }
+                for(int a = 0; a < attributes; a++){
+                    buffer.clear().asLongBuffer().put(block[a], 0, count);
+                    buffer.limit(count * 8);
+                    writeFully(out, buffer, at + ((long) a * words + first)
+                            * 8);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the whole of a buffer
+     *
+     * @param out the file
+     * @param buffer the bytes to write
+     * @param at where in the file to write them
+     * @return how many bytes were written
+     * @throws IOException if the file can't be written
+     */
+    static int writeFully(FileChannel out, ByteBuffer buffer,
+                                  long at) throws IOException {
+        int n = buffer.remaining();
+        while(buffer.hasRemaining())
+            out.write(buffer, at + n - buffer.remaining());
+        return n;
+    }
+
+    /**
+     * Write the header of a cache, everything up to the label codes
+     *
+     * @param out where to write it
+     * @param key the key of the examples
+     * @param size how many examples there are
+     * @param attributes how many attributes each example has
+     * @param classes the labels, indexed by code
+     * @throws IOException if it can't be written
+     */
+    private static void header(DataOutputStream out, byte[] key, int size,
+                               int attributes, String[] classes)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.write(key);
+        out.writeInt(size);
+        out.writeShort(attributes);
+        out.writeByte(classes.length);
+        for(String label : classes){
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Make a temporary file next to a cache to write it in. Every writer
+     * gets its own, so runs writing the same cache at once don't write
+     * over each other, and whichever moves its file into place last wins.
+     * It is made with File.createTempFile like models are, so it gets the
+     * umask's permissions and a cache can be shared by other users, where
+     * Files.createTempFile would only let its owner read it
+     *
+     * @param cache the cache file
+     * @param suffix what the temporary file's name ends with
+     * @return the new empty temporary file
+     * @throws IOException if the file can't be made
+     */
+    private static Path temp(Path cache, String suffix) throws IOException {
+        return File.createTempFile("." + cache.getFileName() + ".", suffix,
+                cache.toAbsolutePath().getParent().toFile()).toPath();
+    }
+
+    /**
+     * Write the cache. It is written to a temporary file first and moved
+     * into place, so a half written cache is never read
+     *
+     * @param cache the cache file
+     * @param key the key of the examples
+     * @param data the examples
+     * @throws IOException if the cache can't be written
+     */
+    private static void write(Path cache, byte[] key, Dataset data)
+            throws IOException {
+        Path temp = temp(cache, ".tmp");
+        try {
+            try(DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp),
+                            1 << 16))) {
+                header(out, key, data.size(), data.attributes(),
+                        data.classes());
+                out.write(data.codes(), 0, data.size());
+                for(int a = 0; a < data.attributes(); a++)
+                    for(long word : data.column(a))
+                        out.writeLong(word);
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * @filename FeatureFile.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file reads a feature cache file a chunk of examples at a time,
+ * instead of all at once like FeatureCache.load does. The streaming
+ * learners make passes over it, so the examples never have to fit in memory
+ */
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An open feature cache file. Every chunk but the last holds CHUNK
+ * examples, and chunk c starts at example c * CHUNK. The file is read with
+ * positional reads, so chunks can be read from many threads at once
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class FeatureFile implements Closeable {
+
+    /** How many examples are in a chunk, a whole number of words */
+    public static final int CHUNK = 1 << 16;
+
+    /** How long the key in the header is */
+    private static final int KEY_LENGTH = 32;
+
+    /** The cache file */
+    private final Path path;
+
+    /** The open file */
+    private final FileChannel channel;
+
+    /** How many examples there are */
+    private final int size;
+
+    /** How many attributes each example has */
+    private final int attributes;
+
+    /** The labels, indexed by code */
+    private final String[] classes;
+
+    /** Where the label codes start */
+    private final long codesAt;
+
+    /** Where the attribute columns start */
+    private final long columnsAt;
+
+    /**
+     * Create an open feature file
+     *
+     * @param path the cache file
+     * @param channel the open file
+     * @param size how many examples there are
+     * @param attributes how many attributes each example has
+     * @param classes the labels, indexed by code
+     * @param codesAt where the label codes start
+     */
+    private FeatureFile(Path path, FileChannel channel, int size,
+                        int attributes, String[] classes, long codesAt){
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+        this.attributes = attributes;
+        this.classes = classes;
+        this.codesAt = codesAt;
+        this.columnsAt = codesAt + size;
+    }
+
+    /**
+     * Open a feature cache file if it has the right key. Only the header
+     * is read
+     *
+     * @param file the cache file
+     * @param key the key the cache has to have, null for any key
+     * @return the open file, null if it isn't there or has another key
+     * @throws IOException if the file can't be read
+     */
+    static FeatureFile open(Path file, byte[] key) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4 + 2 + KEY_LENGTH + 4 +
+                    2 + 1);
+            if(read(channel, header, 0) < header.capacity() ||
+                    header.flip().getInt() != FeatureCache.MAGIC ||
+                    (header.getShort() & 0xFFFF) != FeatureCache.VERSION) {
+                channel.close();
+                return null;
+            }
+            byte[] cached = new byte[KEY_LENGTH];
+            header.get(cached);
+            if(key != null && !Arrays.equals(cached, key)) {
+                channel.close();
+                return null;
+            }
+            int size = header.getInt();
+            int attributes = header.getShort() & 0xFFFF;
+            String[] classes = new String[header.get() & 0xFF];
+            long at = header.capacity();
+            for(int c = 0; c < classes.length; c++){
+                ByteBuffer length = ByteBuffer.allocate(2);
+                readFully(channel, length, at);
+                byte[] bytes = new byte[length.flip().getShort() & 0xFFFF];
+                readFully(channel, ByteBuffer.wrap(bytes), at + 2);
+                classes[c] = new String(bytes, StandardCharsets.UTF_8);
+                at += 2 + bytes.length;
+            }
+            if(size < 0 || at + size + (long) Dataset.words(size) *
+                    attributes * 8 != channel.size()) {
+                channel.close();
+                return null;
+            }
+            return new FeatureFile(file, channel, size, attributes, classes,
+                    at);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the cache file
+     *
+     * @return the file
+     */
+    public Path path(){
+        return path;
+    }
+
+    /**
+     * How many examples there are
+     *
+     * @return the number of examples
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * How many attributes each example has
+     *
+     * @return the number of attributes
+     */
+    public int attributes(){
+        return attributes;
+    }
+
+    /**
+     * Get the labels of the examples
+     *
+     * @return the labels, indexed by code, do not modify
+     */
+    public String[] classes(){
+        return classes;
+    }
+
+    /**
+     * Make a bit mask with every attribute in it
+     *
+     * @return the mask of all attributes
+     */
+    public long allAttributes(){
+        if(attributes > 64)
+            throw new IllegalStateException("Can only learn up to 64 " +
+                    "attributes, file has " + attributes);
+        return attributes == 64 ? -1L : (1L << attributes) - 1;
+    }
+
+    /**
+     * How many chunks the examples are cut into
+     *
+     * @return the number of chunks
+     */
+    public int chunks(){
+        return (int) (((long) size + CHUNK - 1) / CHUNK);
+    }
+
+    /**
+     * The first example of a chunk
+     *
+     * @param chunk the chunk
+     * @return the index of its first example
+     */
+    public static int start(int chunk){
+        return chunk * CHUNK;
+    }
+
+    /**
+     * Read a chunk of examples. The chunk's example i is example
+     * start(chunk) + i of the file, and the codes are the file's codes
+     *
+     * @param chunk the chunk to read
+     * @return the examples of the chunk
+     * @throws IOException if the file can't be read
+     */
+    public Dataset chunk(int chunk) throws IOException {
+        int from = start(chunk);
+        int n = Math.min(CHUNK, size - from);
+        int words = Dataset.words(n);
+        byte[] codes = new byte[n];
+        readFully(channel, ByteBuffer.wrap(codes), codesAt + from);
+        for(byte code : codes)
+            if(code < 0 || code >= classes.length)
+                throw new IOException("Bad label code " + code);
+
+        long[][] columns = new long[attributes][words];
+        ByteBuffer buffer = ByteBuffer.allocate(words * 8);
+        for(int a = 0; a < attributes; a++){
+            readFully(channel, buffer.clear(), columnsAt + ((long) a *
+                    Dataset.words(size) + (from >>> 6)) * 8);
+            buffer.flip().asLongBuffer().get(columns[a]);
+        }
+        return new Dataset(columns, codes, classes, n);
+    }
+
+    /**
+     * Close the file
+     *
+     * @throws IOException if it can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Read until a buffer is full or the file ends
+     *
+     * @param channel the file
+     * @param buffer the buffer to fill
+     * @param at where in the file to read from
+     * @return how many bytes were read
+     * @throws IOException if the file can't be read
+     */
+    private static int read(FileChannel channel, ByteBuffer buffer, long at)
+            throws IOException {
+        int start = buffer.position();
+        while(buffer.hasRemaining()){
+            int n = channel.read(buffer, at + buffer.position() - start);
+            if(n < 0)
+                break;
+        }
+        return buffer.position() - start;
+    }
+
+    /**
+     * Fill a buffer from the file
+     *
+     * @param channel the file
+     * @param buffer the buffer to fill
+     * @param at where in the file to read from
+     * @throws IOException if the file can't be read or ends first
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer,
+                                  long at) throws IOException {
+        if(read(channel, buffer, at) < buffer.limit())
+            throw new EOFException("Feature file ends early");
+    }
+}
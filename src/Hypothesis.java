@@ -26,4 +26,28 @@ public interface Hypothesis {
      * @return the predicted label
      */
     String ask(List<Boolean> x);
+
+    /**
+     * The labels that the codes from asking about a block stand for. The
+     * default is Utils.EN and Utils.NL
+     *
+     * @return the labels, indexed by code
+     */
+    default String[] labels(){
+        return new String[]{Utils.EN, Utils.NL};
+    }
+
+    /**
+     * Ask the hypothesis about every row of a block at once. The default
+     * asks about one row at a time
+     *
+     * @param block the packed rows of features
+     * @param out filled with the code of the predicted label of each row,
+     *            an index into labels()
+     */
+    default void ask(FeatureBlock block, byte[] out){
+        String[] labels = labels();
+        for(int r = 0; r < block.size(); r++)
+            out[r] = Utils.code(labels, ask(block.row(r)));
+    }
 }
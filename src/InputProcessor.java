@@ -7,6 +7,7 @@
  * dealing with data
  */
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -33,4 +34,54 @@ public interface InputProcessor {
      * @return the list of boolean features
      */
     List<Boolean> getFeatures(String data);
+
+    /**
+     * Gets the features from a line of data packed into a long, bit f is
+     * feature f. By default the list of features is packed
+     *
+     * @param data the line of data to search for features in
+     * @return the packed features
+     */
+    default long getFeatureBits(String data){
+        List<Boolean> x = getFeatures(data);
+        if(x.size() > 64)
+            throw new IllegalArgumentException("Features are packed into a " +
+                    "long, so there can be at most 64 features");
+        long bits = 0;
+        for(int f = 0; f < x.size(); f++)
+            if(x.get(f))
+                bits |= 1L << f;
+        return bits;
+    }
+
+    /**
+     * How many features each line of data has
+     *
+     * @return the number of features
+     */
+    default int features(){
+        return getFeatures("").size();
+    }
+
+    /**
+     * The version of the code that works out the features. It has to go
+     * up whenever getFeatures or getFeatureBits give different features for
+     * the same line, so features cached by the old code aren't used
+     *
+     * @return the version, 0 by default
+     */
+    default int version(){
+        return 0;
+    }
+
+    /**
+     * The data files the features are worked out from, like word lists.
+     * Features cached from a line are only still good if these files
+     * haven't changed
+     *
+     * @return the data files, none by default
+     */
+    default List<File> dataFiles(){
+        return List.of();
+    }
 }
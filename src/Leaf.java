@@ -10,7 +10,9 @@
  */
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * A leaf node. Contains the answer to the question asked to it trained
@@ -21,6 +23,9 @@ import java.util.List;
  */
 public class Leaf extends DecisionTree implements Serializable, Hypothesis{
 
+    /** Keep models written before the class changed readable */
+    private static final long serialVersionUID = 1684206277468636085L;
+
     /** The label that was decided is the answer */
     private final String label;
 
@@ -44,6 +49,130 @@ public class Leaf extends DecisionTree implements Serializable, Hypothesis{
         return label;
     }
 
+    /**
+     * A leaf only answers with its own label
+     *
+     * @return the label of the leaf
+     */
+    @Override
+    public String[] labels(){
+        return new String[]{label};
+    }
+
+    /**
+     * Add the label of the leaf to a list if it is not there yet
+     *
+     * @param labels the list of labels found so far
+     */
+    @Override
+    protected void labels(List<String> labels){
+        if(!labels.contains(label))
+            labels.add(label);
+    }
+
+    /**
+     * Every row gets the leaf's label, which is code 0
+     *
+     * @param block the packed rows of features
+     * @param out filled with the code of the predicted label of each row
+     */
+    @Override
+    public void ask(FeatureBlock block, byte[] out){
+        Arrays.fill(out, 0, block.size(), (byte) 0);
+    }
+
+    /**
+     * Write the leaf's label for the rows in a mask
+     *
+     * @param block the packed rows of features
+     * @param rows mask of the rows that reached this leaf
+     * @param labels the labels, indexed by code
+     * @param out filled with the code of the predicted label of each row
+     */
+    @Override
+    protected void ask(FeatureBlock block, long[] rows, String[] labels,
+                       byte[] out){
+        byte code = Utils.code(labels, label);
+        for(int w = 0; w < rows.length; w++)
+            for(long bits = rows[w]; bits != 0; bits &= bits - 1)
+                out[(w << 6) + Long.numberOfTrailingZeros(bits)] = code;
+    }
+
+    /**
+     * Ask what the leaf node holds for every training example
+     *
+     * @param data the training data
+     * @return mask of the examples that have the leaf's label
+     */
+    @Override
+    public long[] correct(Dataset data){
+        int code = data.code(label);
+        return code < 0 ? new long[Dataset.words(data.size())] :
+                data.mask(code).clone();
+    }
+
+    /**
+     * Ask what the leaf node holds for every training example
+     *
+     * @param data the training data
+     * @param answer the label to look for
+     * @return every example if the leaf has that label, none if not
+     */
+    @Override
+    public long[] answers(Dataset data, String answer){
+        long[] mask = new long[Dataset.words(data.size())];
+        if(Objects.equals(label, answer)) {
+            Arrays.fill(mask, -1L);
+            if((data.size() & 63) != 0)
+                mask[mask.length - 1] = (1L << data.size()) - 1;
+        }
+        return mask;
+    }
+
+    /**
+     * Get the label the leaf answers with
+     *
+     * @return the label
+     */
+    public String getLabel(){
+        return label;
+    }
+
+    /**
+     * A leaf tests no attributes
+     *
+     * @return an empty mask
+     */
+    @Override
+    public long attributes(){
+        return 0;
+    }
+
+    /**
+     * Two leaves are equal if they give the same answer
+     *
+     * @param o the object to compare with
+     * @return true if the labels are the same
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(o == null || getClass() != o.getClass())
+            return false;
+        return Objects.equals(label, ((Leaf) o).label);
+    }
+
+    /**
+     * Hash the leaf from its label
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(label);
+    }
+
     /**
      * Pretty print the leaf node
      *
@@ -0,0 +1,431 @@
+/*
+ * @filename ModelFormat.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file reads and writes trained models in a compact binary format.
+ * Trees are stored as flat arrays of nodes instead of serialized objects,
+ * so a model loads from a memory mapped file with a loop and no recursion.
+ * Files written by the old ObjectOutputStream code can still be read
+ */
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The model file format. Everything is big endian
+ *
+ *  u4  magic, "DTM1"
+ *  u2  version
+ *  u1  kind, 1 for a DecisionTree and 2 for an Ensemble
+ *  u2  label count, then each label as a u2 byte length and UTF-8 bytes
+ *
+ * A DecisionTree is one tree. An Ensemble is
+ *
+ *  u2  label count, its labels are that many labels from the start of the
+ *      label list, version 2 only. Version 1 ensembles answer en or nl
+ *  u4  stump count, then for each stump its f8 weight and its tree
+ *  s1  how many attributes index the lookup table, -1 for no table
+ *  u4  table length in words, then each word as an s8
+ *
+ * A tree is a u4 node count and then every node breadth first from the
+ * root, as an s2 attribute and an s2 label index. An inner node has a label
+ * of -1 and its two children are the next two unused nodes, false child
+ * first. A leaf has an attribute of -1 and a label of -1 when it has none
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class ModelFormat {
+
+    /** The first four bytes of a model file */
+    private static final int MAGIC = 0x44544D31;
+
+    /** The first two bytes of a Java serialization stream */
+    private static final int SERIALIZED = 0xACED;
+
+    /** The version written, version 1 can still be read */
+    private static final int VERSION = 2;
+
+    /**
+     * The most attributes a model can test when the features it is asked
+     * with aren't known, since FeatureBlock keeps a row in a long
+     */
+    private static final int MAX_ATTRIBUTES = Long.SIZE;
+
+    /** The kind of model that is a single tree */
+    private static final int TREE = 1;
+
+    /** The kind of model that is a boosted ensemble */
+    private static final int ENSEMBLE = 2;
+
+    /**
+     * Only static methods
+     */
+    private ModelFormat(){
+    }
+
+    /**
+     * Write a model to a file. It is written to a temporary file of its
+     * own next to the file and moved into place, so a reader never sees
+     * half a model and two writers never share a temporary file
+     *
+     * @param hypothesis the model, a DecisionTree or an Ensemble
+     * @param file the file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Hypothesis hypothesis, File file)
+            throws IOException {
+        File temp = File.createTempFile("." + file.getName() + ".", ".tmp",
+                file.getAbsoluteFile().getParentFile());
+        try {
+            try(DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                write(hypothesis, out);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Write a model to a stream, so it can be part of a bigger file
+     *
+     * @param hypothesis the model, a DecisionTree or an Ensemble
+     * @param out where to write
+     * @throws IOException if it can't be written
+     */
+    static void write(Hypothesis hypothesis, DataOutputStream out)
+            throws IOException {
+        List<String> labels = new ArrayList<>();
+        int kind;
+        if(hypothesis instanceof DecisionTree) {
+            kind = TREE;
+            collect((DecisionTree) hypothesis, labels);
+        } else if(hypothesis instanceof Ensemble) {
+            kind = ENSEMBLE;
+            labels.addAll(Arrays.asList(hypothesis.labels()));
+            for(DecisionTree tree : ((Ensemble) hypothesis).hypothesises())
+                collect(tree, labels);
+        } else {
+            throw new IllegalArgumentException("Can't write a " +
+                    hypothesis.getClass().getName());
+        }
+        if(labels.size() > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Too many labels, the most " +
+                    "is " + Short.MAX_VALUE);
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(kind);
+        out.writeShort(labels.size());
+        for(String label : labels){
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        if(kind == TREE)
+            writeTree((DecisionTree) hypothesis, labels, out);
+        else
+            writeEnsemble((Ensemble) hypothesis, labels, out);
+    }
+
+    /**
+     * Write the stumps, their weights and the lookup table of an ensemble
+     *
+     * @param ensemble the ensemble
+     * @param labels the label dictionary
+     * @param out where to write
+     * @throws IOException if it can't be written
+     */
+    private static void writeEnsemble(Ensemble ensemble, List<String> labels,
+                                      DataOutputStream out)
+            throws IOException {
+        DecisionTree[] trees = ensemble.hypothesises();
+        double[] weights = ensemble.weights();
+        out.writeShort(ensemble.labels().length);
+        out.writeInt(trees.length);
+        for(int i = 0; i < trees.length; i++){
+            out.writeDouble(weights[i]);
+            writeTree(trees[i], labels, out);
+        }
+        long[] table = ensemble.table();
+        out.writeByte(table == null ? -1 : ensemble.tableAttributes());
+        out.writeInt(table == null ? 0 : table.length);
+        if(table != null)
+            for(long word : table)
+                out.writeLong(word);
+    }
+
+    /**
+     * Read a model from a file in either the binary format or the old
+     * serialized format
+     *
+     * @param file the file to read
+     * @return the model
+     * @throws FileNotFoundException if there is no such file
+     * @throws IOException if the file can't be read or isn't a model
+     * @throws ClassNotFoundException if an old model names a missing class
+     */
+    public static Hypothesis read(File file) throws IOException,
+            ClassNotFoundException {
+        return read(file, MAX_ATTRIBUTES);
+    }
+
+    /**
+     * Read a model that is going to be asked about examples with some
+     * number of features. A binary model that tests a feature past them
+     * is turned away here instead of failing when it is asked
+     *
+     * @param file the file to read
+     * @param features how many features the model will be asked with
+     * @return the model
+     * @throws FileNotFoundException if there is no such file
+     * @throws IOException if the file can't be read or isn't a model for
+     *                     that many features
+     * @throws ClassNotFoundException if an old model names a missing class
+     */
+    public static Hypothesis read(File file, int features)
+            throws IOException, ClassNotFoundException {
+        if(!file.isFile())
+            throw new FileNotFoundException(file.toString());
+        try(FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if(buffer.remaining() >= 2 &&
+                    (buffer.getShort(0) & 0xFFFF) == SERIALIZED)
+                return readSerialized(file);
+            try {
+                return read(buffer, features);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Model file '" + file +
+                        "' is truncated", e);
+            }
+        }
+    }
+
+    /**
+     * Read a model in the binary format
+     *
+     * @param buffer the model, from its position on
+     * @return the model
+     * @throws IOException if it isn't a model this version can read
+     * @throws BufferUnderflowException if the model is cut short
+     */
+    static Hypothesis read(ByteBuffer buffer) throws IOException {
+        return read(buffer, MAX_ATTRIBUTES);
+    }
+
+    /**
+     * Read a model in the binary format that tests fewer than some number
+     * of features
+     *
+     * @param buffer the model, from its position on
+     * @param features how many features the model can test
+     * @return the model
+     * @throws IOException if it isn't a model this version can read, or it
+     *                     tests a feature past the ones given
+     * @throws BufferUnderflowException if the model is cut short
+     */
+    static Hypothesis read(ByteBuffer buffer, int features)
+            throws IOException {
+        if(buffer.remaining() < 4 || buffer.getInt() != MAGIC)
+            throw new IOException("Not a model file");
+        int version = buffer.getShort() & 0xFFFF;
+        if(version < 1 || version > VERSION)
+            throw new IOException("Model file version " + version +
+                    " is not supported, expected up to " + VERSION);
+        int kind = buffer.get();
+        String[] labels = new String[buffer.getShort() & 0xFFFF];
+        for(int i = 0; i < labels.length; i++){
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            labels[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        if(kind == TREE)
+            return readTree(buffer, labels, features);
+        if(kind != ENSEMBLE)
+            throw new IOException("Unknown model kind " + kind);
+        String[] classes = null;
+        if(version >= 2) {
+            int k = buffer.getShort() & 0xFFFF;
+            if(k > labels.length)
+                throw new IOException("Ensemble has " + k + " labels but " +
+                        "the file has " + labels.length);
+            classes = Arrays.copyOf(labels, k);
+        }
+        int n = buffer.getInt();
+        if(n < 0)
+            throw new IOException("Bad stump count " + n);
+        DecisionTree[] trees = new DecisionTree[n];
+        double[] weights = new double[n];
+        for(int i = 0; i < n; i++){
+            weights[i] = buffer.getDouble();
+            trees[i] = readTree(buffer, labels, features);
+        }
+        int tableAttributes = buffer.get();
+        int words = buffer.getInt();
+        if(words < 0 || words > buffer.remaining() / 8)
+            throw new IOException("Bad table length " + words);
+        long[] table = new long[words];
+        for(int i = 0; i < table.length; i++)
+            table[i] = buffer.getLong();
+        if(tableAttributes < 0)
+            return new Ensemble(classes, trees, weights, null, 0);
+        if(table.length != Dataset.words(1 << tableAttributes))
+            throw new IOException("Lookup table has " + table.length +
+                    " words for " + tableAttributes + " attributes");
+        return new Ensemble(classes, trees, weights, table,
+                tableAttributes);
+    }
+
+    /**
+     * Read a model written with ObjectOutputStream
+     *
+     * @param file the file to read
+     * @return the model
+     * @throws IOException if the file can't be read or isn't a model
+     * @throws ClassNotFoundException if it names a missing class
+     */
+    private static Hypothesis readSerialized(File file) throws IOException,
+            ClassNotFoundException {
+        try(ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            Object o = in.readObject();
+            if(!(o instanceof Hypothesis))
+                throw new IOException("Does not implement Hypothesis");
+            return (Hypothesis) o;
+        }
+    }
+
+    /**
+     * Add the labels of a tree's leaves to the dictionary
+     *
+     * @param tree the tree
+     * @param labels the labels seen so far
+     */
+    private static void collect(DecisionTree tree, List<String> labels){
+        for(DecisionTree node : nodes(tree))
+            if(node instanceof Leaf) {
+                String label = ((Leaf) node).getLabel();
+                if(label != null && !labels.contains(label))
+                    labels.add(label);
+            }
+    }
+
+    /**
+     * List the nodes of a tree breadth first
+     *
+     * @param tree the tree
+     * @return the nodes, the root first
+     */
+    private static List<DecisionTree> nodes(DecisionTree tree){
+        List<DecisionTree> nodes = new ArrayList<>();
+        Deque<DecisionTree> queue = new ArrayDeque<>();
+        queue.add(tree);
+        while(!queue.isEmpty()){
+            DecisionTree node = queue.remove();
+            nodes.add(node);
+            if(!(node instanceof Leaf)) {
+                queue.add(node.getSubtree(0));
+                queue.add(node.getSubtree(1));
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Write a tree as its count of nodes and the nodes breadth first
+     *
+     * @param tree the tree
+     * @param labels the label dictionary
+     * @param out where to write
+     * @throws IOException if it can't be written
+     */
+    private static void writeTree(DecisionTree tree, List<String> labels,
+                                  DataOutputStream out) throws IOException {
+        List<DecisionTree> nodes = nodes(tree);
+        out.writeInt(nodes.size());
+        for(DecisionTree node : nodes){
+            if(node instanceof Leaf) {
+                String label = ((Leaf) node).getLabel();
+                out.writeShort(-1);
+                out.writeShort(label == null ? -1 : labels.indexOf(label));
+            } else {
+                out.writeShort(node.getAttribute());
+                out.writeShort(-1);
+            }
+        }
+    }
+
+    /**
+     * Read a tree written by writeTree, linking the nodes up in one pass.
+     * Leaves with the same label are the same object
+     *
+     * @param buffer the file, positioned at the tree
+     * @param labels the label dictionary
+     * @param features how many features the tree can test
+     * @return the tree
+     * @throws IOException if the nodes don't make a tree, or one tests a
+     *                     feature past the ones given or answers with a
+     *                     label not in the dictionary
+     */
+    private static DecisionTree readTree(ByteBuffer buffer, String[] labels,
+                                         int features) throws IOException {
+        int n = buffer.getInt();
+        if(n <= 0 || n > buffer.remaining() / 4)
+            throw new IOException("Bad node count " + n);
+        Leaf[] leaves = new Leaf[labels.length + 1];
+        DecisionTree[] nodes = new DecisionTree[n];
+        for(int i = 0; i < n; i++){
+            int attribute = buffer.getShort();
+            int label = buffer.getShort();
+            if(attribute < -1 || attribute >= features)
+                throw new IOException("Bad attribute " + attribute +
+                        ", the model is asked with " + features +
+                        " features");
+            if(attribute >= 0) {
+                nodes[i] = new DecisionTree(attribute);
+            } else if(label < -1 || label >= labels.length) {
+                throw new IOException("Bad label index " + label);
+            } else {
+                if(leaves[label + 1] == null)
+                    leaves[label + 1] = new Leaf(label < 0 ? null :
+                            labels[label]);
+                nodes[i] = leaves[label + 1];
+            }
+        }
+
+        int next = 1;
+        for(DecisionTree node : nodes){
+            if(node instanceof Leaf)
+                continue;
+            if(next + 1 >= n)
+                throw new IOException("Tree is missing nodes");
+            node.addSubtree(nodes[next]);
+            node.addSubtree(nodes[next + 1]);
+            next += 2;
+        }
+        if(next != n)
+            throw new IOException("Tree has unused nodes");
+        return nodes[0];
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * @filename ModelGenerator.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file turns a small trained model into its own class at runtime. The
+ * tree is written out as straight line bytecode, nested ifs on the features
+ * that return the label at each leaf, and loaded as a hidden class so the
+ * JIT can inline the whole model into the caller
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Generates a Hypothesis class for a DecisionTree or a compacted Ensemble.
+ * When a model can't be generated, because it is too big or the ensemble
+ * has no lookup table, the model is handed back as it was
+ *
+ * The generated class extends Model, which holds the tree's labels. It has
+ * the tree twice: ask(List) tests the boxed features and returns the label,
+ * and code() tests the packed bits of a block row and returns the label's
+ * code, which is what blocks are asked with
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class ModelGenerator {
+
+    /** The class file version, Java 17 */
+    private static final int VERSION = 61;
+
+    /** The biggest ask() method that is generated, so branches always fit */
+    private static final int MAX_CODE = Short.MAX_VALUE;
+
+    /** The name of the generated class, it is hidden so it never clashes */
+    private static final String NAME = "GeneratedHypothesis";
+
+    /** The internal name of the class the generated class extends */
+    private static final String BASE = "ModelGenerator$Model";
+
+    /** The constant pool being built, each entry already encoded */
+    private final List<byte[]> pool = new ArrayList<>();
+
+    /** Index of each entry already in the pool */
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+
+    /** The bytecode of the method being generated */
+    private byte[] code = new byte[256];
+
+    /** How many bytes of code have been written */
+    private int length;
+
+    /** The offsets that are jumped to, they each need a stack map frame */
+    private final TreeSet<Integer> targets = new TreeSet<>();
+
+    /**
+     * Only made through generate()
+     */
+    private ModelGenerator(){
+    }
+
+    /**
+     * Generate a class for the model if it can be done
+     *
+     * @param hypothesis the trained model
+     * @return the generated model, or the same model if it can't be
+     */
+    public static Hypothesis generate(Hypothesis hypothesis){
+        DecisionTree tree;
+        if(hypothesis instanceof DecisionTree)
+            tree = (DecisionTree) hypothesis;
+        else if(hypothesis instanceof Ensemble)
+            tree = ((Ensemble) hypothesis).toTree();
+        else
+            tree = null;
+        if(tree == null)
+            return hypothesis;
+
+        try {
+            String[] labels = tree.labels();
+            byte[] bytes = new ModelGenerator().classFile(tree, labels);
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(bytes, true);
+            return (Hypothesis) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class, String[].class))
+                    .invoke(labels);
+        } catch (Throwable t) {
+            System.err.println("ModelGenerator: could not generate the " +
+                    "model, using it as is, " + t);
+            return hypothesis;
+        }
+    }
+
+    /**
+     * Write the whole class file for a tree
+     *
+     * @param tree the tree to generate
+     * @param labels the labels the codes stand for
+     * @return the class file
+     * @throws IOException if the buffers can't be written
+     */
+    private byte[] classFile(DecisionTree tree, String[] labels)
+            throws IOException {
+        int thisClass = classRef(NAME);
+        int superClass = classRef(BASE);
+        ByteArrayOutputStream methods = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(methods);
+
+        // public <init>(String[] labels) { super(labels); }
+        u1(0x2A);                           // aload_0
+        u1(0x2B);                           // aload_1
+        u1(0xB7);                           // invokespecial Model.<init>
+        u2(methodRef(BASE, "<init>", "([Ljava/lang/String;)V", false));
+        u1(0xB1);                           // return
+        method(out, "<init>", "([Ljava/lang/String;)V", 2, 2);
+
+        // public String ask(List x) { the tree }
+        ask(tree);
+        method(out, "ask", "(Ljava/util/List;)Ljava/lang/String;", 2, 2);
+
+        // public int code(long[][] columns, int word, long bit) { the tree }
+        code(tree, Arrays.asList(labels));
+        method(out, "code", "([[JIJ)I", 4, 5);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(VERSION);
+        out.writeShort(pool.size() + 1);
+        for(byte[] entry : pool)
+            out.write(entry);
+        out.writeShort(0x0031);             // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);                  // Model is the Hypothesis
+        out.writeShort(0);                  // no fields
+        out.writeShort(3);                  // <init>, ask and code
+        methods.writeTo(out);
+        out.writeShort(0);                  // no class attributes
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write out the public method whose code was just generated, and start
+     * the next one with empty code
+     *
+     * @param out where the methods go
+     * @param name the name of the method
+     * @param type the descriptor of the method
+     * @param maxStack the deepest the operand stack gets
+     * @param maxLocals how many local slots the method uses
+     * @throws IOException if the buffer can't be written
+     */
+    private void method(DataOutputStream out, String name, String type,
+                        int maxStack, int maxLocals) throws IOException {
+        if(length > MAX_CODE)
+            throw new IllegalArgumentException("Model is too big, " +
+                    length + " bytes of code");
+        byte[] frames = frames();
+        out.writeShort(0x0001);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(type));
+        out.writeShort(1);
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + length + (frames == null ? 0 :
+                6 + frames.length));
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(0);                  // no exceptions
+        if(frames == null) {
+            out.writeShort(0);
+        } else {
+            out.writeShort(1);
+            out.writeShort(utf8("StackMapTable"));
+            out.writeInt(frames.length);
+            out.write(frames);
+        }
+        length = 0;
+        targets.clear();
+    }
+
+    /**
+     * Write the bytecode for a tree. An inner node is
+     *  if(x.get(feature)) { true subtree } else { false subtree }
+     * and a leaf returns its label
+     *
+     * @param tree the tree to write
+     */
+    private void ask(DecisionTree tree){
+        if(tree instanceof Leaf) {
+            String label = ((Leaf) tree).getLabel();
+            if(label == null) {
+                u1(0x01);                   // aconst_null
+            } else {
+                u1(0x13);                   // ldc_w
+                u2(string(label));
+            }
+            u1(0xB0);                       // areturn
+            return;
+        }
+
+        u1(0x2B);                           // aload_1
+        push(tree.getAttribute());
+        u1(0xB9);                           // invokeinterface List.get
+        u2(methodRef("java/util/List", "get", "(I)Ljava/lang/Object;",
+                true));
+        u1(2);
+        u1(0);
+        u1(0xC0);                           // checkcast Boolean
+        u2(classRef("java/lang/Boolean"));
+        u1(0xB6);                           // invokevirtual booleanValue
+        u2(methodRef("java/lang/Boolean", "booleanValue", "()Z", false));
+
+        int branch = length;
+        u1(0x99);                           // ifeq to the false subtree
+        u2(0);
+        ask(tree.getSubtree(1));
+        int target = length;
+        targets.add(target);
+        patch(branch + 1, target - branch);
+        ask(tree.getSubtree(0));
+    }
+
+    /**
+     * Write the bytecode for a tree on packed bits. An inner node is
+     *  if((columns[feature][word] & bit) != 0) { true subtree }
+     *  else { false subtree }
+     * and a leaf returns the code of its label
+     *
+     * @param tree the tree to write
+     * @param labels the labels the codes stand for
+     */
+    private void code(DecisionTree tree, List<String> labels){
+        if(tree instanceof Leaf) {
+            push(labels.indexOf(((Leaf) tree).getLabel()));
+            u1(0xAC);                       // ireturn
+            return;
+        }
+
+        u1(0x2B);                           // aload_1
+        push(tree.getAttribute());
+        u1(0x32);                           // aaload
+        u1(0x1C);                           // iload_2
+        u1(0x2F);                           // laload
+        u1(0x21);                           // lload_3
+        u1(0x7F);                           // land
+        u1(0x09);                           // lconst_0
+        u1(0x94);                           // lcmp
+
+        int branch = length;
+        u1(0x99);                           // ifeq to the false subtree
+        u2(0);
+        code(tree.getSubtree(1), labels);
+        int target = length;
+        targets.add(target);
+        patch(branch + 1, target - branch);
+        code(tree.getSubtree(0), labels);
+    }
+
+    /**
+     * Write the smallest instruction that pushes an int
+     *
+     * @param value the int, not negative
+     */
+    private void push(int value){
+        if(value <= 5) {
+            u1(0x03 + value);               // iconst_n
+        } else if(value <= Byte.MAX_VALUE) {
+            u1(0x10);                       // bipush
+            u1(value);
+        } else {
+            u1(0x11);                       // sipush
+            u2(value);
+        }
+    }
+
+    /**
+     * Make the stack map table. Every jump lands with the same locals as
+     * the method started with and nothing on the stack, so every frame is
+     * a same frame
+     *
+     * @return the encoded table, null if there are no jumps
+     */
+    private byte[] frames(){
+        if(targets.isEmpty())
+            return null;
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        frames.write(targets.size() >> 8);
+        frames.write(targets.size());
+        int last = -1;
+        for(int target : targets){
+            int delta = target - last - 1;
+            if(delta < 64) {
+                frames.write(delta);        // same_frame
+            } else {
+                frames.write(251);          // same_frame_extended
+                frames.write(delta >> 8);
+                frames.write(delta);
+            }
+            last = target;
+        }
+        return frames.toByteArray();
+    }
+
+    /**
+     * Overwrite two bytes of code already written
+     *
+     * @param at where to write
+     * @param value the value to write
+     */
+    private void patch(int at, int value){
+        code[at] = (byte) (value >> 8);
+        code[at + 1] = (byte) value;
+    }
+
+    /**
+     * Write one byte of code
+     *
+     * @param value the value to write
+     */
+    private void u1(int value){
+        if(length == code.length)
+            code = Arrays.copyOf(code, code.length * 2);
+        code[length++] = (byte) value;
+    }
+
+    /**
+     * Write two bytes of code
+     *
+     * @param value the value to write
+     */
+    private void u2(int value){
+        u1(value >> 8);
+        u1(value);
+    }
+
+    /**
+     * Get the pool index of a utf8 constant, adding it if needed
+     *
+     * @param s the string
+     * @return the index in the pool
+     */
+    private int utf8(String s){
+        return constant("U" + s, () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(1);
+            out.writeUTF(s);
+            return bytes.toByteArray();
+        });
+    }
+
+    /**
+     * Get the pool index of a class constant, adding it if needed
+     *
+     * @param name the internal name of the class
+     * @return the index in the pool
+     */
+    private int classRef(String name){
+        int utf8 = utf8(name);
+        return constant("C" + name, () -> new byte[]{7, (byte) (utf8 >> 8),
+                (byte) utf8});
+    }
+
+    /**
+     * Get the pool index of a string constant, adding it if needed
+     *
+     * @param s the string
+     * @return the index in the pool
+     */
+    private int string(String s){
+        int utf8 = utf8(s);
+        return constant("S" + s, () -> new byte[]{8, (byte) (utf8 >> 8),
+                (byte) utf8});
+    }
+
+    /**
+     * Get the pool index of a method constant, adding it if needed
+     *
+     * @param owner the internal name of the class with the method
+     * @param name the name of the method
+     * @param type the descriptor of the method
+     * @param isInterface whether the owner is an interface
+     * @return the index in the pool
+     */
+    private int methodRef(String owner, String name, String type,
+                          boolean isInterface){
+        int c = classRef(owner);
+        int n = utf8(name);
+        int t = utf8(type);
+        int nameAndType = constant("N" + name + type, () -> new byte[]{12,
+                (byte) (n >> 8), (byte) n, (byte) (t >> 8), (byte) t});
+        return constant("M" + owner + "." + name + type, () -> new byte[]{
+                (byte) (isInterface ? 11 : 10), (byte) (c >> 8), (byte) c,
+                (byte) (nameAndType >> 8), (byte) nameAndType});
+    }
+
+    /**
+     * Look up a constant, adding it to the pool the first time
+     *
+     * @param key what the constant is
+     * @param entry makes the encoded entry
+     * @return the index in the pool
+     */
+    private int constant(String key, Entry entry){
+        Integer index = poolIndex.get(key);
+        if(index != null)
+            return index;
+        try {
+            pool.add(entry.encode());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        poolIndex.put(key, pool.size());
+        return pool.size();
+    }
+
+    /**
+     * What every generated class extends. It keeps the labels of the tree
+     * and asks about a block a row at a time through the generated code()
+     */
+    abstract static class Model implements Hypothesis {
+
+        /** The labels the codes stand for */
+        private final String[] labels;
+
+        /**
+         * Create the model
+         *
+         * @param labels the labels the codes stand for
+         */
+        protected Model(String[] labels){
+            this.labels = labels;
+        }
+
+        /**
+         * The labels that the codes from asking about a block stand for
+         *
+         * @return the labels, indexed by code
+         */
+        @Override
+        public String[] labels(){
+            return labels.clone();
+        }
+
+        /**
+         * Ask the generated tree about every row of a block, straight from
+         * the packed columns
+         *
+         * @param block the packed rows of features
+         * @param out filled with the code of the predicted label of each row
+         */
+        @Override
+        public void ask(FeatureBlock block, byte[] out){
+            long[][] columns = new long[block.features()][];
+            for(int f = 0; f < columns.length; f++)
+                columns[f] = block.column(f);
+            for(int r = 0; r < block.size(); r++)
+                out[r] = (byte) code(columns, r >>> 6, 1L << r);
+        }
+
+        /**
+         * Ask the generated tree about one row of packed columns
+         *
+         * @param columns the packed columns, columns[feature][word]
+         * @param word the word of the row in each column
+         * @param bit the bit of the row in its word
+         * @return the code of the predicted label
+         */
+        public abstract int code(long[][] columns, int word, long bit);
+    }
+
+    /**
+     * Encodes one constant pool entry
+     */
+    private interface Entry {
+
+        /**
+         * Encode the entry
+         *
+         * @return the bytes of the entry
+         * @throws IOException if the bytes can't be written
+         */
+        byte[] encode() throws IOException;
+    }
+}
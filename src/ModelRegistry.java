@@ -0,0 +1,289 @@
+/*
+ * @filename ModelRegistry.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file keeps named models that can be replaced while they are being
+ * asked. Each model sits behind an atomic reference, and the model files
+ * are watched so a retrained model is loaded, checked and swapped in on a
+ * background thread without the process restarting
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The model registry. Asking never waits on a reload: callers get whichever
+ * model is current and keep using it for as long as they hold it, while a
+ * new one is loaded on the side. A model that can't be loaded or fails its
+ * check is logged and the old one stays
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class ModelRegistry implements Closeable {
+
+    /** The models by name */
+    private final Map<String, Model> models = new ConcurrentHashMap<>();
+
+    /** Finds the features the models are asked with */
+    private final InputProcessor inputProcessor;
+
+    /** Whether models are turned into their own class when loaded */
+    private final boolean generate;
+
+    /** Loads changed models one at a time, off the asking threads */
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(
+            task -> daemon(task, "model-loader"));
+
+    /** Watches the directories of the model files, null until watch() */
+    private WatchService watcher;
+
+    /**
+     * Create an empty registry
+     *
+     * @param inputProcessor finds the features the models are asked with,
+     *                       used to check new models
+     * @param generate whether to turn models into their own class
+     */
+    public ModelRegistry(InputProcessor inputProcessor, boolean generate){
+        this.inputProcessor = inputProcessor;
+        this.generate = generate;
+    }
+
+    /**
+     * Add a model, loading it now. If the registry is watching, the
+     * model's directory is watched too
+     *
+     * @param name the name to ask for it by
+     * @param file the model file
+     * @return the loaded model
+     * @throws IOException if the model can't be read or fails its check
+     * @throws ClassNotFoundException if an old model names a missing class
+     */
+    public Hypothesis register(String name, File file) throws IOException,
+            ClassNotFoundException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        long[] stamp = stamp(path);
+        Hypothesis hypothesis = load(path);
+        Model model = new Model(path, hypothesis, stamp);
+        models.put(name, model);
+        synchronized(this) {
+            if(watcher != null)
+                path.getParent().register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        return hypothesis;
+    }
+
+    /**
+     * Get the current model
+     *
+     * @param name the name of the model
+     * @return the model, null if there is none by that name
+     */
+    public Hypothesis get(String name){
+        Model model = models.get(name);
+        return model == null ? null : model.current.get();
+    }
+
+    /**
+     * Get something that always hands out the current model
+     *
+     * @param name the name of the model
+     * @return the supplier of the current model
+     * @throws IllegalArgumentException if there is no model by that name
+     */
+    public Supplier<Hypothesis> supplier(String name){
+        Model model = models.get(name);
+        if(model == null)
+            throw new IllegalArgumentException("No model named " + name);
+        return model.current::get;
+    }
+
+    /**
+     * Load a model's file again now and swap it in if it changed and
+     * passes its check. Called from the background loader when the file
+     * changes, but can be called directly
+     *
+     * @param name the name of the model
+     * @return true if a new model was swapped in
+     */
+    public boolean reload(String name){
+        Model model = models.get(name);
+        if(model == null)
+            return false;
+        synchronized(model) {
+            try {
+                long[] stamp = stamp(model.path);
+                if(stamp[0] == model.stamp[0] && stamp[1] == model.stamp[1])
+                    return false;
+                Hypothesis hypothesis = load(model.path);
+                model.current.set(hypothesis);
+                model.stamp = stamp;
+                System.err.printf("ModelRegistry: reloaded '%s' from '%s'\n",
+                        name, model.path);
+                return true;
+            } catch (IOException | ClassNotFoundException |
+                     RuntimeException e) {
+                System.err.printf("ModelRegistry: kept the old '%s', the " +
+                        "new model could not be loaded, %s\n", name, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Start watching the model files. Changes are picked up on a daemon
+     * thread and reloaded on the background loader
+     *
+     * @throws IOException if the directories can't be watched
+     */
+    public synchronized void watch() throws IOException {
+        if(watcher != null)
+            return;
+        watcher = FileSystems.getDefault().newWatchService();
+        for(Model model : models.values())
+            model.path.getParent().register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        WatchService service = watcher;
+        daemon(() -> changes(service), "model-watcher").start();
+    }
+
+    /**
+     * Stop watching and loading
+     *
+     * @throws IOException if the watcher can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        loader.shutdownNow();
+        if(watcher != null)
+            watcher.close();
+    }
+
+    /**
+     * Take file events until the watcher is closed, handing the models
+     * whose files changed to the loader
+     *
+     * @param service the watcher
+     */
+    private void changes(WatchService service){
+        try {
+            while(true){
+                WatchKey key = service.take();
+                Path directory = (Path) key.watchable();
+                for(WatchEvent<?> event : key.pollEvents()){
+                    if(!(event.context() instanceof Path))
+                        continue;
+                    Path changed = directory.resolve((Path) event.context());
+                    models.forEach((name, model) -> {
+                        if(model.path.equals(changed))
+                            loader.execute(() -> reload(name));
+                    });
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed, stop watching
+        }
+    }
+
+    /**
+     * Load a model and check that it can be asked with this registry's
+     * features, by asking it about a row of all false and a row of all
+     * true features
+     *
+     * @param path the model file
+     * @return the loaded model
+     * @throws IOException if it can't be read or fails the check
+     * @throws ClassNotFoundException if an old model names a missing class
+     */
+    private Hypothesis load(Path path) throws IOException,
+            ClassNotFoundException {
+        int features = inputProcessor.features();
+        Hypothesis hypothesis = Predict.load(path.toFile(), generate,
+                features);
+        FeatureBlock probe = new FeatureBlock(features, 2);
+        probe.add(0);
+        probe.add(features == 64 ? -1L : (1L << features) - 1);
+        byte[] codes = new byte[2];
+        try {
+            String[] labels = hypothesis.labels();
+            hypothesis.ask(probe, codes);
+            for(byte code : codes)
+                if(code < 0 || code >= labels.length)
+                    throw new IOException("Model answered with code " +
+                            code + " but has " + labels.length + " labels");
+        } catch (RuntimeException e) {
+            throw new IOException("Model '" + path + "' can't be asked " +
+                    "with " + features + " features", e);
+        }
+        return hypothesis;
+    }
+
+    /**
+     * What a file looks like right now, so a change can be told apart from
+     * an event for a file that is the same
+     *
+     * @param path the file
+     * @return its last modified time and size
+     * @throws IOException if the file can't be read
+     */
+    private static long[] stamp(Path path) throws IOException {
+        return new long[]{Files.getLastModifiedTime(path).toMillis(),
+                Files.size(path)};
+    }
+
+    /**
+     * Make a daemon thread
+     *
+     * @param task what the thread runs
+     * @param name the name of the thread
+     * @return the thread, not started
+     */
+    private static Thread daemon(Runnable task, String name){
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * One named model
+     */
+    private static class Model {
+
+        /** The model file */
+        private final Path path;
+
+        /** The model being asked */
+        private final AtomicReference<Hypothesis> current;
+
+        /** The last modified time and size of the file it came from */
+        private long[] stamp;
+
+        /**
+         * Create a named model
+         *
+         * @param path the model file
+         * @param hypothesis the loaded model
+         * @param stamp what the file looked like when it was loaded
+         */
+        private Model(Path path, Hypothesis hypothesis, long[] stamp){
+            this.path = path;
+            this.current = new AtomicReference<>(hypothesis);
+            this.stamp = stamp;
+        }
+    }
+}
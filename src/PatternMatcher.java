@@ -0,0 +1,338 @@
+/*
+ * @filename PatternMatcher.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file finds many patterns in a line of text in one pass. Substring
+ * patterns are compiled into an Aho-Corasick automaton and whole word
+ * patterns into a trie that is walked one token at a time, so a line is
+ * read once no matter how many patterns there are
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Matches a line against a fixed set of patterns. Each pattern turns on one
+ * feature bit, and matching a line gives back the bits of every pattern
+ * found in it. Matching doesn't allocate anything, so one matcher can be
+ * shared by any number of threads
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class PatternMatcher {
+
+    /** The characters that are in some pattern, sorted */
+    private final char[] chars;
+
+    /** The class of each ASCII character, 0 if it isn't in any pattern */
+    private final int[] ascii = new int[128];
+
+    /** How many character classes there are */
+    private final int width;
+
+    /** The substring automaton, next[state * width + class] */
+    private final int[] next;
+
+    /** The features found once the substring automaton reaches a state */
+    private final long[] found;
+
+    /** The word trie, word[state * width + class], -1 if no word follows */
+    private final int[] word;
+
+    /** The features of the word that ends at each trie state */
+    private final long[] words;
+
+    /**
+     * Create a matcher from its tables, use a Builder
+     *
+     * @param chars the characters that are in some pattern, sorted
+     * @param next the substring automaton
+     * @param found the features found at each automaton state
+     * @param word the word trie
+     * @param words the features of the word ending at each trie state
+     */
+    private PatternMatcher(char[] chars, int[] next, long[] found,
+                           int[] word, long[] words){
+        this.chars = chars;
+        this.width = chars.length + 1;
+        this.next = next;
+        this.found = found;
+        this.word = word;
+        this.words = words;
+        for(int c = 0; c < ascii.length; c++)
+            ascii[c] = charClass((char) c);
+    }
+
+    /**
+     * Find the patterns in a line. Substrings can be anywhere in the line.
+     * Words are the pieces of the line between single spaces, the same as
+     * line.split(" "), so an empty word only counts when split would keep it
+     *
+     * @param line the line to search
+     * @return bit f is set if a pattern for feature f was found
+     */
+    public long match(String line){
+        long bits = found[0];
+        int state = 0, token = 0, start = 0;
+        boolean empty = false;
+        int length = line.length();
+        for(int i = 0; i < length; i++){
+            char c = line.charAt(i);
+            int cls = c < 128 ? ascii[c] : charClass(c);
+            state = next[state * width + cls];
+            bits |= found[state];
+            if(c == ' ') {
+                if(i == start) {
+                    empty = true;
+                } else {
+                    bits |= endWord(token, empty);
+                    empty = false;
+                }
+                token = 0;
+                start = i + 1;
+            } else if(token >= 0) {
+                token = word[token * width + cls];
+            }
+        }
+        if(start < length)
+            bits |= endWord(token, empty);
+        else if(length == 0)
+            bits |= words[0];
+        return bits;
+    }
+
+    /**
+     * The features of a word that just ended
+     *
+     * @param token the trie state the word reached, -1 if it left the trie
+     * @param empty whether an empty word came before it
+     * @return the features of the word and of the empty word before it
+     */
+    private long endWord(int token, boolean empty){
+        long bits = token >= 0 ? words[token] : 0;
+        return empty ? bits | words[0] : bits;
+    }
+
+    /**
+     * Find the class of a character
+     *
+     * @param c the character
+     * @return its class, 0 if it isn't in any pattern
+     */
+    private int charClass(char c){
+        int i = Arrays.binarySearch(chars, c);
+        return i < 0 ? 0 : i + 1;
+    }
+
+    /**
+     * Collects the patterns and builds the matcher
+     */
+    public static class Builder {
+
+        /** The substring patterns */
+        private final List<String> substrings = new ArrayList<>();
+
+        /** The feature of each substring pattern */
+        private final List<Integer> substringFeatures = new ArrayList<>();
+
+        /** The word patterns */
+        private final List<String> wordList = new ArrayList<>();
+
+        /** The feature of each word pattern */
+        private final List<Integer> wordFeatures = new ArrayList<>();
+
+        /**
+         * Add a pattern that can be anywhere in the line
+         *
+         * @param pattern the substring to find
+         * @param feature the feature it turns on
+         * @return this builder
+         */
+        public Builder substring(String pattern, int feature){
+            check(feature);
+            substrings.add(pattern);
+            substringFeatures.add(feature);
+            return this;
+        }
+
+        /**
+         * Add a pattern that has to be a whole word of the line
+         *
+         * @param pattern the word to find
+         * @param feature the feature it turns on
+         * @return this builder
+         */
+        public Builder word(String pattern, int feature){
+            check(feature);
+            wordList.add(pattern);
+            wordFeatures.add(feature);
+            return this;
+        }
+
+        /**
+         * Build the automaton and the word trie
+         *
+         * @return the matcher
+         */
+        public PatternMatcher build(){
+            TreeSet<Character> set = new TreeSet<>();
+            for(String s : substrings)
+                for(char c : s.toCharArray())
+                    set.add(c);
+            for(String s : wordList)
+                for(char c : s.toCharArray())
+                    set.add(c);
+            char[] chars = new char[set.size()];
+            int k = 0;
+            for(char c : set)
+                chars[k++] = c;
+            int width = chars.length + 1;
+
+            Trie substringTrie = new Trie(width);
+            for(int p = 0; p < substrings.size(); p++)
+                substringTrie.add(substrings.get(p), chars,
+                        substringFeatures.get(p));
+            Trie wordTrie = new Trie(width);
+            for(int p = 0; p < wordList.size(); p++)
+                wordTrie.add(wordList.get(p), chars, wordFeatures.get(p));
+
+            return new PatternMatcher(chars, substringTrie.automaton(),
+                    substringTrie.features(), wordTrie.table(),
+                    wordTrie.features());
+        }
+
+        /**
+         * Make sure a feature fits in the bitmap
+         *
+         * @param feature the feature
+         */
+        private static void check(int feature){
+            if(feature < 0 || feature >= 64)
+                throw new IllegalArgumentException("Features are packed " +
+                        "into a long, feature " + feature + " is out of range");
+        }
+    }
+
+    /**
+     * A trie of patterns over character classes, grown while building
+     */
+    private static class Trie {
+
+        /** How many character classes there are */
+        private final int width;
+
+        /** The child of each state for each class, -1 for none */
+        private int[] children;
+
+        /** The features of the patterns ending at each state */
+        private long[] ends;
+
+        /** How many states there are */
+        private int size;
+
+        /**
+         * Create a trie with just the root
+         *
+         * @param width how many character classes there are
+         */
+        private Trie(int width){
+            this.width = width;
+            this.children = new int[width * 16];
+            this.ends = new long[16];
+            Arrays.fill(children, -1);
+            size = 1;
+        }
+
+        /**
+         * Add a pattern
+         *
+         * @param pattern the pattern
+         * @param chars the sorted characters that give each class
+         * @param feature the feature it turns on
+         */
+        private void add(String pattern, char[] chars, int feature){
+            int state = 0;
+            for(char c : pattern.toCharArray()){
+                int at = state * width + Arrays.binarySearch(chars, c) + 1;
+                if(children[at] < 0) {
+                    if(size == ends.length) {
+                        int grown = size * 2;
+                        children = Arrays.copyOf(children, grown * width);
+                        Arrays.fill(children, size * width, grown * width,
+                                -1);
+                        ends = Arrays.copyOf(ends, grown);
+                    }
+                    children[at] = size++;
+                }
+                state = children[at];
+            }
+            ends[state] |= 1L << feature;
+        }
+
+        /**
+         * The trie as a table, -1 where no pattern goes on
+         *
+         * @return the child table
+         */
+        private int[] table(){
+            return Arrays.copyOf(children, size * width);
+        }
+
+        /**
+         * The features of the patterns ending at each state. After
+         * automaton() this includes the patterns that end inside them
+         *
+         * @return the features of each state
+         */
+        private long[] features(){
+            return Arrays.copyOf(ends, size);
+        }
+
+        /**
+         * Turn the trie into an Aho-Corasick automaton. The states are
+         * visited breadth first, each gets a failure link to the longest
+         * proper suffix in the trie and picks up its features, and every
+         * missing child is filled in from the failure state so matching
+         * never has to follow links
+         *
+         * @return the full transition table
+         */
+        private int[] automaton(){
+            int[] next = table();
+            int[] fail = new int[size];
+            int[] queue = new int[size];
+            int head = 0, tail = 0;
+            for(int cls = 0; cls < width; cls++){
+                int child = next[cls];
+                if(child < 0) {
+                    next[cls] = 0;
+                } else {
+                    fail[child] = 0;
+                    ends[child] |= ends[0];
+                    queue[tail++] = child;
+                }
+            }
+            while(head < tail){
+                int state = queue[head++];
+                for(int cls = 0; cls < width; cls++){
+                    int at = state * width + cls;
+                    int child = next[at];
+                    int backup = next[fail[state] * width + cls];
+                    if(child < 0) {
+                        next[at] = backup;
+                    } else {
+                        fail[child] = backup;
+                        ends[child] |= ends[backup];
+                        queue[tail++] = child;
+                    }
+                }
+            }
+            return next;
+        }
+    }
+}
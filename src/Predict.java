@@ -9,7 +9,6 @@
  */
 
 import java.io.*;
-import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -23,36 +22,55 @@ import java.util.Scanner;
 public class Predict {
 
     /** The usage message */
-    private static final String USAGE = "Usage: java Predict <hypothesis> <file>";
+    private static final String USAGE = "Usage: java Predict <hypothesis> " +
+            "<file> [-generate] [-pipeline] [-threads n]";
+
+    /** How many lines are asked about at once */
+    private static final int BLOCK = 4096;
 
     /**
      * The driver class. Extract hypothesis from file then query
      * data from it
+     * Options after the file
+     *  -generate   turn the model into its own class before asking it
+     *  -pipeline   read, ask and write on separate threads, with a pool
+     *              of workers finding features and asking
+     *  -threads n  use n workers in the pipeline, implies -pipeline
      *
      * @param args the command line args
      */
     public static void main(String[] args) {
         // Check arguments are right
-        if(args.length != 2){
+        if(args.length < 2){
             System.err.println(USAGE);
             System.exit(0);
         }
 
-        // get the hypothesis and load it
-        Hypothesis hypothesis = null;
-        try(
-                FileInputStream in = new FileInputStream(args[0]);
-                ObjectInputStream ois = new ObjectInputStream(in)
-        ){
-            Object o = ois.readObject();
-            if(o instanceof DecisionTree ) {
-                hypothesis = (DecisionTree) o;
-            }  else if(o instanceof Ensemble) {
-                hypothesis = (Ensemble) o;
+        // get the options
+        boolean generate = false;
+        int threads = 0;
+        for(int i = 2; i < args.length; i++){
+            if(args[i].equals("-generate")) {
+                generate = true;
+            } else if(args[i].equals("-pipeline")) {
+                threads = Math.max(threads,
+                        Runtime.getRuntime().availableProcessors());
+            } else if(args[i].equals("-threads") && i + 1 < args.length
+                    && args[i + 1].matches("[1-9][0-9]*")) {
+                threads = Integer.parseInt(args[++i]);
             } else {
-                throw new Exception("Does not implement Hypothesis");
+                System.err.printf("Predict: Invalid option '%s'\n", args[i]);
+                System.err.println(USAGE);
+                System.exit(1);
             }
+        }
 
+        // get the hypothesis and load it
+        InputProcessor inputProcessor = new DutchInput();
+        Hypothesis hypothesis = null;
+        try {
+            hypothesis = load(new File(args[0]), generate,
+                    inputProcessor.features());
         } catch (FileNotFoundException e) {
             System.err.printf("Predict: '%s' File not found\n", args[0]);
             e.printStackTrace();
@@ -73,18 +91,78 @@ public class Predict {
         }
 
         // Get list of example data from next file and ask the hypothesis
+        // the lines are asked about a block at a time
         String line;
-        InputProcessor inputProcessor = new DutchInput();
+        if(threads > 0) {
+            try {
+                new ScoringPipeline(hypothesis, inputProcessor, threads)
+                        .run(new File(args[1]), System.out);
+            } catch (FileNotFoundException e) {
+                System.err.printf("Predict: '%s' File not found\n", args[1]);
+                e.printStackTrace();
+            } catch (IOException | InterruptedException e) {
+                System.err.printf("Predict: '%s' could not be scored\n",
+                        args[1]);
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        String[] labels = hypothesis.labels();
+        byte[] codes = new byte[BLOCK];
+        FeatureBlock block = new FeatureBlock(inputProcessor.features(),
+                BLOCK);
         try(Scanner s = new Scanner(new File(args[1]))){
             while(s.hasNext()) {
                 line = s.nextLine();
-                List<Boolean> features = inputProcessor.getFeatures(line);
-                String l = hypothesis.ask(features);
-                System.out.println(l);
+                block.add(inputProcessor.getFeatureBits(line));
+                if(block.isFull())
+                    askBlock(hypothesis, block, labels, codes);
             }
+            if(block.size() > 0)
+                askBlock(hypothesis, block, labels, codes);
         } catch (FileNotFoundException e) {
             System.err.printf("Predict: '%s' File not found\n", args[1]);
             e.printStackTrace();
         }
     }
+
+    /**
+     * Load a hypothesis and get it ready to ask. Trees are compiled, or
+     * generated into their own class
+     *
+     * @param file the hypothesis file
+     * @param generate whether to turn the model into its own class
+     * @param features how many features the hypothesis is asked with
+     * @return the hypothesis
+     * @throws IOException if the file can't be read or isn't a model for
+     *                     that many features
+     * @throws ClassNotFoundException if an old model names a missing class
+     */
+    static Hypothesis load(File file, boolean generate, int features)
+            throws IOException, ClassNotFoundException {
+        Hypothesis o = ModelFormat.read(file, features);
+        if(generate)
+            return ModelGenerator.generate(o);
+        if(o instanceof DecisionTree)
+            return CompiledTree.compile((DecisionTree) o);
+        return o;
+    }
+
+    /**
+     * Ask the hypothesis about a block of lines, print the answers in order
+     * and empty the block
+     *
+     * @param hypothesis the hypothesis to ask
+     * @param block the block of lines
+     * @param labels the labels the hypothesis' codes stand for
+     * @param codes where to put the codes of the answers
+     */
+    private static void askBlock(Hypothesis hypothesis, FeatureBlock block,
+                                 String[] labels, byte[] codes){
+        hypothesis.ask(block, codes);
+        for(int r = 0; r < block.size(); r++)
+            System.out.println(labels[codes[r]]);
+        block.clear();
+    }
 }
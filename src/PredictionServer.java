@@ -0,0 +1,248 @@
+/*
+ * @filename PredictionServer.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains a long running prediction server. The hypothesis and
+ * input processor are loaded once, and then lines are asked about over a
+ * local TCP socket, so callers don't pay for starting the JVM, loading the
+ * word lists and reading the model on every request
+ */
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Serves predictions on the loopback address. The protocol is lines of
+ * UTF-8 text: every line sent gets one line back with its label, in the
+ * same order. A single question is one line, and a batch is many lines
+ * sent at once. Lines that have already arrived are asked about together
+ * as one block, and the answers are flushed whenever the connection has no
+ * more lines waiting
+ *
+ * Each connection is handled on its own virtual thread when the JVM has
+ * them, and on a pooled platform thread when it doesn't
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class PredictionServer implements Closeable {
+
+    /** The usage message */
+    private static final String USAGE = "Usage: java PredictionServer " +
+            "<hypothesis> <port> [-generate]";
+
+    /** The most lines asked about at once */
+    private static final int BLOCK = 4096;
+
+    /** Hands out the hypothesis to ask, it can change between blocks */
+    private final Supplier<Hypothesis> hypothesis;
+
+    /** Finds the features of each line */
+    private final InputProcessor inputProcessor;
+
+    /** The socket connections are accepted on */
+    private final ServerSocket server;
+
+    /** Runs one task per connection */
+    private final ExecutorService connections;
+
+    /**
+     * Create a server listening on the loopback address
+     *
+     * @param hypothesis the hypothesis to ask, shared by every connection
+     * @param inputProcessor finds the features of each line
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the port can't be opened
+     */
+    public PredictionServer(Hypothesis hypothesis,
+                            InputProcessor inputProcessor, int port)
+            throws IOException {
+        this(() -> hypothesis, inputProcessor, port);
+    }
+
+    /**
+     * Create a server listening on the loopback address that asks whatever
+     * hypothesis is current, like one from a ModelRegistry
+     *
+     * @param hypothesis hands out the hypothesis to ask for each block
+     * @param inputProcessor finds the features of each line
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the port can't be opened
+     */
+    public PredictionServer(Supplier<Hypothesis> hypothesis,
+                            InputProcessor inputProcessor, int port)
+            throws IOException {
+        this.hypothesis = hypothesis;
+        this.inputProcessor = inputProcessor;
+        this.server = new ServerSocket(port, 0,
+                InetAddress.getLoopbackAddress());
+        this.connections = perConnection();
+    }
+
+    /**
+     * Load a hypothesis and serve it until the process is killed. When the
+     * hypothesis file changes the new model is swapped in
+     *
+     * Options after the port
+     *  -generate   turn the model into its own class before serving it
+     *
+     * @param args the command line args
+     */
+    public static void main(String[] args) {
+        if(args.length < 2 || !args[1].matches("[0-9]+")){
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        boolean generate = false;
+        for(int i = 2; i < args.length; i++){
+            if(args[i].equals("-generate")) {
+                generate = true;
+            } else {
+                System.err.printf("PredictionServer: Invalid option '%s'\n",
+                        args[i]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+
+        try {
+            InputProcessor inputProcessor = new DutchInput();
+            ModelRegistry registry = new ModelRegistry(inputProcessor,
+                    generate);
+            registry.register(args[0], new File(args[0]));
+            registry.watch();
+            PredictionServer server = new PredictionServer(
+                    registry.supplier(args[0]), inputProcessor,
+                    Integer.parseInt(args[1]));
+            System.out.printf("Serving '%s' on port %d\n", args[0],
+                    server.port());
+            server.serve();
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.printf("PredictionServer: could not serve '%s'\n",
+                    args[0]);
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The port the server is listening on
+     *
+     * @return the port
+     */
+    public int port(){
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accept connections until the server is closed
+     *
+     * @throws IOException if accepting fails for any other reason
+     */
+    public void serve() throws IOException {
+        while(!server.isClosed()){
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                if(server.isClosed())
+                    return;
+                throw e;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    /**
+     * Stop accepting connections. Connections already open finish what
+     * they were sent
+     *
+     * @throws IOException if the socket can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdown();
+    }
+
+    /**
+     * Answer every line sent on a connection until the client closes it
+     *
+     * @param socket the connection
+     */
+    private void handle(Socket socket){
+        try(socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            FeatureBlock block = new FeatureBlock(inputProcessor.features(),
+                    BLOCK);
+            byte[] codes = new byte[BLOCK];
+            String line;
+            while((line = in.readLine()) != null){
+                block.add(inputProcessor.getFeatureBits(line));
+                boolean waiting = in.ready();
+                if(block.isFull() || !waiting)
+                    answer(block, codes, out);
+                if(!waiting)
+                    out.flush();
+            }
+            answer(block, codes, out);
+        } catch (IOException e) {
+            // the client went away, nothing to answer
+        }
+    }
+
+    /**
+     * Ask the current hypothesis about the lines in a block, write the
+     * answers and empty it
+     *
+     * @param block the block of lines
+     * @param codes where to put the codes of the answers
+     * @param out where to write the answers
+     * @throws IOException if the answers can't be written
+     */
+    private void answer(FeatureBlock block, byte[] codes, Writer out)
+            throws IOException {
+        if(block.size() == 0)
+            return;
+        Hypothesis current = hypothesis.get();
+        String[] labels = current.labels();
+        current.ask(block, codes);
+        for(int r = 0; r < block.size(); r++)
+            out.write(labels[codes[r]] + "\n");
+        block.clear();
+    }
+
+    /**
+     * Make an executor that starts a new virtual thread for every task.
+     * Virtual threads are looked up by reflection so this still runs on
+     * JVMs without them, where a cached pool of daemon threads is used
+     *
+     * @return the executor
+     */
+    private static ExecutorService perConnection(){
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "prediction-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
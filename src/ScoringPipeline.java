@@ -0,0 +1,198 @@
+/*
+ * @filename ScoringPipeline.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains a pipelined way of asking a hypothesis about every
+ * line of a big file. One thread reads the file in chunks of lines, a pool
+ * of workers finds the features and asks the hypothesis for each chunk, and
+ * one thread writes the answers back out in the same order as the input
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * The scoring pipeline. The hypothesis and input processor are shared by
+ * the workers, so they must only be read while asking
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class ScoringPipeline {
+
+    /** How many lines go to a worker at once */
+    private static final int CHUNK = 4096;
+
+    /** How many bytes the reader and writer buffer */
+    private static final int BUFFER = 1 << 20;
+
+    /** How many chunks can be waiting per worker before the reader waits */
+    private static final int AHEAD = 4;
+
+    /** The hypothesis to ask */
+    private final Hypothesis hypothesis;
+
+    /** Finds the features of each line */
+    private final InputProcessor inputProcessor;
+
+    /** How many workers there are */
+    private final int threads;
+
+    /**
+     * Create a pipeline
+     *
+     * @param hypothesis the hypothesis to ask
+     * @param inputProcessor finds the features of each line
+     * @param threads how many workers to use
+     */
+    public ScoringPipeline(Hypothesis hypothesis,
+                           InputProcessor inputProcessor, int threads){
+        this.hypothesis = hypothesis;
+        this.inputProcessor = inputProcessor;
+        this.threads = threads;
+    }
+
+    /**
+     * Ask about every line of a file and write one answer per line. Lines
+     * at the end of the file with nothing but whitespace are skipped, the
+     * same as reading with a Scanner
+     *
+     * @param in the file to read
+     * @param out where to write the answers
+     * @throws IOException if the file can't be read or written
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(File in, OutputStream out) throws IOException,
+            InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        BlockingQueue<Future<String>> results =
+                new ArrayBlockingQueue<>(threads * AHEAD);
+        Future<String> end = CompletableFuture.completedFuture(null);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out),
+                BUFFER);
+        FutureTask<Void> writing = new FutureTask<>(() ->
+                write(results, end, writer));
+        new Thread(writing, "pipeline-writer").start();
+
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(in)), BUFFER)) {
+            List<String> chunk = new ArrayList<>(CHUNK);
+            List<String> blanks = new ArrayList<>();
+            String line;
+            while((line = reader.readLine()) != null){
+                if(line.isBlank()) {
+                    blanks.add(line);
+                    continue;
+                }
+                for(String blank : blanks)
+                    chunk = add(chunk, blank, workers, results);
+                blanks.clear();
+                chunk = add(chunk, line, workers, results);
+            }
+            if(!chunk.isEmpty())
+                results.put(submit(chunk, workers));
+        } finally {
+            results.put(end);
+            workers.shutdown();
+        }
+
+        try {
+            writing.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Add a line to the chunk, handing the chunk to the workers when full
+     *
+     * @param chunk the chunk being filled
+     * @param line the line to add
+     * @param workers the worker pool
+     * @param results the queue of answers in order
+     * @return the chunk to keep filling
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    private List<String> add(List<String> chunk, String line,
+                             ExecutorService workers,
+                             BlockingQueue<Future<String>> results)
+            throws InterruptedException {
+        chunk.add(line);
+        if(chunk.size() < CHUNK)
+            return chunk;
+        results.put(submit(chunk, workers));
+        return new ArrayList<>(CHUNK);
+    }
+
+    /**
+     * Hand a chunk of lines to the workers
+     *
+     * @param chunk the lines
+     * @param workers the worker pool
+     * @return the answers, one per line
+     */
+    private Future<String> submit(List<String> chunk,
+                                  ExecutorService workers){
+        return workers.submit(() -> ask(chunk));
+    }
+
+    /**
+     * Find the features of a chunk of lines and ask about all of them
+     *
+     * @param chunk the lines
+     * @return the answers, one line each
+     */
+    private String ask(List<String> chunk){
+        FeatureBlock block = new FeatureBlock(inputProcessor.features(),
+                chunk.size());
+        for(String line : chunk)
+            block.add(inputProcessor.getFeatureBits(line));
+        byte[] codes = new byte[chunk.size()];
+        hypothesis.ask(block, codes);
+
+        String[] labels = hypothesis.labels();
+        StringBuilder answers = new StringBuilder(chunk.size() * 3);
+        for(byte code : codes)
+            answers.append(labels[code]).append(System.lineSeparator());
+        return answers.toString();
+    }
+
+    /**
+     * Write the answers in the order the chunks were read. After a failure
+     * the rest of the queue is still taken so the reader never gets stuck
+     *
+     * @param results the queue of answers in order
+     * @param end the marker after the last chunk
+     * @param writer where to write
+     * @return nothing
+     * @throws Exception if a worker failed or the answers can't be written
+     */
+    private static Void write(BlockingQueue<Future<String>> results,
+                              Future<String> end, Writer writer)
+            throws Exception {
+        Exception failure = null;
+        Future<String> result;
+        while((result = results.take()) != end){
+            if(failure != null) {
+                result.cancel(false);
+                continue;
+            }
+            try {
+                writer.write(result.get());
+            } catch (ExecutionException e) {
+                failure = e.getCause() instanceof Exception ?
+                        (Exception) e.getCause() : e;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if(failure != null)
+            throw failure;
+        writer.flush();
+        return null;
+    }
+}
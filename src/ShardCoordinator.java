@@ -0,0 +1,437 @@
+/*
+ * @filename ShardCoordinator.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file hands the streaming learners' passes out to ShardWorker
+ * processes over local sockets. Each worker holds a run of chunks of the
+ * feature file, and the coordinator adds up the tables they send back and
+ * makes every choice itself, so the model is the one a single process
+ * learns
+ */
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The passes of the streaming learners made by worker processes. The
+ * chunks are cut into one run per worker in order, so worker w's chunks all
+ * come before worker w + 1's. The counts of a tree pass are exact, the held
+ * examples come back in example order, and each boosting round's chunk
+ * tables are added up in chunk order, so the tree and the ensemble are bit
+ * for bit the ones StreamingLearner learns from the file alone
+ *
+ * Only tables and stumps cross the sockets in a round, never the examples
+ * or weights, which stay with the workers. The workers read the feature
+ * file themselves, so they have to be on the same box
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class ShardCoordinator implements ExamplePasses {
+
+    /** How long a spawned worker gets to exit after it is told to quit */
+    private static final long QUIT_SECONDS = 10;
+
+    /** The training data */
+    private final FeatureFile data;
+
+    /** The connection to each worker */
+    private final Socket[] sockets;
+
+    /** The replies from each worker */
+    private final DataInputStream[] in;
+
+    /** The requests to each worker */
+    private final DataOutputStream[] out;
+
+    /** The spawned workers, null if they were already running */
+    private final Process[] processes;
+
+    /** The table from one worker or chunk */
+    private final SplitStats part;
+
+    /**
+     * Connect to the workers and have each one load its shard
+     *
+     * @param data the training data
+     * @param ports the loopback port of each worker
+     * @param processes the spawned workers, or null
+     * @throws IOException if a worker can't be reached or can't load
+     */
+    private ShardCoordinator(FeatureFile data, int[] ports,
+                             Process[] processes) throws IOException {
+        this.data = data;
+        this.processes = processes;
+        this.sockets = new Socket[ports.length];
+        this.in = new DataInputStream[ports.length];
+        this.out = new DataOutputStream[ports.length];
+        this.part = new SplitStats(data.attributes(), data.classes().length);
+        try {
+            for(int w = 0; w < ports.length; w++){
+                sockets[w] = new Socket(InetAddress.getLoopbackAddress(),
+                        ports[w]);
+                sockets[w].setTcpNoDelay(true);
+                in[w] = new DataInputStream(new BufferedInputStream(
+                        sockets[w].getInputStream(), 1 << 16));
+                out[w] = new DataOutputStream(new BufferedOutputStream(
+                        sockets[w].getOutputStream(), 1 << 16));
+            }
+            String cache = data.path().toAbsolutePath().toString();
+            for(int w = 0; w < ports.length; w++){
+                int first = shard(w);
+                out[w].writeByte(ShardWorker.LOAD);
+                out[w].writeUTF(cache);
+                out[w].writeInt(data.size());
+                out[w].writeInt(first);
+                out[w].writeInt(shard(w + 1) - first);
+                out[w].flush();
+            }
+            int held = 0;
+            for(int w = 0; w < ports.length; w++)
+                held += reply(w).readInt();
+            if(held != data.size())
+                throw new IOException("The shard workers hold " + held +
+                        " examples, expected " + data.size());
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start worker processes on this box, running the same java and class
+     * path as this one, and connect to them
+     *
+     * @param data the training data
+     * @param workers how many workers to start
+     * @return the coordinator
+     * @throws IOException if a worker can't be started or can't load
+     */
+    public static ShardCoordinator spawn(FeatureFile data, int workers)
+            throws IOException {
+        if(workers < 1)
+            throw new IllegalArgumentException("Sharding needs at least " +
+                    "one worker, got " + workers);
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                "java").toString();
+        Process[] processes = new Process[workers];
+        int[] ports = new int[workers];
+        try {
+            for(int w = 0; w < workers; w++)
+                processes[w] = new ProcessBuilder(java, "-cp",
+                        System.getProperty("java.class.path"),
+                        "ShardWorker", "0")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            for(int w = 0; w < workers; w++){
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(processes[w].getInputStream(),
+                                StandardCharsets.UTF_8));
+                String line = reader.readLine();
+                if(line == null || !line.startsWith(ShardWorker.LISTENING))
+                    throw new IOException("Shard worker " + w +
+                            " did not start");
+                ports[w] = Integer.parseInt(line.substring(
+                        ShardWorker.LISTENING.length()).trim());
+            }
+        } catch (IOException | RuntimeException e) {
+            for(Process process : processes)
+                if(process != null)
+                    process.destroy();
+            throw e;
+        }
+        return new ShardCoordinator(data, ports, processes);
+    }
+
+    /**
+     * Connect to workers already running on this box
+     *
+     * @param data the training data
+     * @param ports the loopback port of each worker
+     * @return the coordinator
+     * @throws IOException if a worker can't be reached or can't load
+     */
+    public static ShardCoordinator connect(FeatureFile data, int[] ports)
+            throws IOException {
+        if(ports.length < 1)
+            throw new IllegalArgumentException("Sharding needs at least " +
+                    "one worker");
+        return new ShardCoordinator(data, ports, null);
+    }
+
+    /**
+     * The first chunk of a worker's shard
+     *
+     * @param w the worker, or the number of workers for the end
+     * @return the chunk
+     */
+    private int shard(int w){
+        return (int) ((long) data.chunks() * w / sockets.length);
+    }
+
+    /**
+     * How many examples there are
+     *
+     * @return the number of examples
+     */
+    @Override
+    public int size(){
+        return data.size();
+    }
+
+    /**
+     * How many attributes each example has
+     *
+     * @return the number of attributes
+     */
+    @Override
+    public int attributes(){
+        return data.attributes();
+    }
+
+    /**
+     * Get the labels of the examples
+     *
+     * @return the labels, indexed by code, do not modify
+     */
+    @Override
+    public String[] classes(){
+        return data.classes();
+    }
+
+    /**
+     * Have the workers send their examples down the tree so far, and
+     * add up their counts and held examples in worker order
+     *
+     * @param root the root of the tree so far
+     * @param counted the nodes being counted in this pass
+     * @throws IOException if a worker fails
+     */
+    @Override
+    public void count(StreamingLearner.Node root,
+                      List<StreamingLearner.Node> counted) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(bytes);
+        request.writeByte(ShardWorker.COUNT);
+        List<StreamingLearner.Node> order = new ArrayList<>();
+        List<StreamingLearner.Node> held = new ArrayList<>();
+        writeNode(request, root, order, held);
+        broadcast(bytes);
+
+        for(int w = 0; w < sockets.length; w++){
+            DataInputStream reply = reply(w);
+            for(StreamingLearner.Node node : order){
+                for(int c = 0; c < node.counts.length; c++)
+                    node.counts[c] += reply.readInt();
+                for(int c = 0; c < node.last.length; c++)
+                    node.last[c] = Math.max(node.last[c], reply.readInt());
+                part.read(reply, node.attr);
+                node.stats.add(part, node.attr);
+            }
+            for(StreamingLearner.Node node : held){
+                int n = reply.readInt();
+                if(node.held + n > node.size)
+                    throw new IOException("Shard worker " + w + " sent " +
+                            "more examples than reach a node");
+                for(int i = 0; i < n; i++)
+                    node.keep(reply.readLong(), reply.readByte());
+            }
+        }
+        for(StreamingLearner.Node node : held)
+            if(node.held != node.size)
+                throw new IOException("The shard workers sent " + node.held +
+                        " examples of a node with " + node.size);
+    }
+
+    /**
+     * Send the last stump and update to the workers, and add the tables
+     * of their chunks to the round's in chunk order
+     *
+     * @param last the last round's stump, null before the first round
+     * @param factor what the weights of correct examples are multiplied by
+     * @param scale what every weight is then divided by
+     * @param attr bit mask of the attributes to count
+     * @param round the table of the round, added to
+     * @throws IOException if a worker fails
+     */
+    @Override
+    public void boost(DecisionTree last, double factor, double scale,
+                      long attr, SplitStats round) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(bytes);
+        request.writeByte(ShardWorker.BOOST);
+        request.writeLong(attr);
+        request.writeBoolean(last != null);
+        if(last != null)
+            writeTree(request, last);
+        request.writeDouble(factor);
+        request.writeDouble(scale);
+        broadcast(bytes);
+
+        for(int w = 0; w < sockets.length; w++){
+            DataInputStream reply = reply(w);
+            int chunks = reply.readInt();
+            if(chunks != shard(w + 1) - shard(w))
+                throw new IOException("Shard worker " + w + " sent " +
+                        chunks + " chunks");
+            for(int k = 0; k < chunks; k++){
+                part.read(reply, attr);
+                round.add(part, attr);
+            }
+        }
+    }
+
+    /**
+     * Find the last example of each label on each side of an attribute,
+     * the latest any worker found
+     *
+     * @param attribute the attribute
+     * @return last[feature][code], -1 if there is none
+     * @throws IOException if a worker fails
+     */
+    @Override
+    public int[][] last(int attribute) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(bytes);
+        request.writeByte(ShardWorker.LAST);
+        request.writeByte(attribute);
+        broadcast(bytes);
+
+        int[][] last = new int[2][data.classes().length];
+        for(int[] side : last)
+            Arrays.fill(side, -1);
+        for(int w = 0; w < sockets.length; w++){
+            DataInputStream reply = reply(w);
+            for(int[] side : last)
+                for(int c = 0; c < side.length; c++)
+                    side[c] = Math.max(side[c], reply.readInt());
+        }
+        return last;
+    }
+
+    /**
+     * Tell the workers to quit and close the connections. Spawned workers
+     * that don't exit in time are killed. The feature file stays open
+     *
+     * @throws IOException never, the workers are let go either way
+     */
+    @Override
+    public void close() throws IOException {
+        for(int w = 0; w < sockets.length; w++){
+            Socket socket = sockets[w];
+            if(socket == null)
+                continue;
+            try(socket) {
+                out[w].writeByte(ShardWorker.QUIT);
+                out[w].flush();
+            } catch (IOException e) {
+                // the worker is already gone
+            }
+        }
+        if(processes == null)
+            return;
+        for(Process process : processes){
+            try {
+                if(!process.waitFor(QUIT_SECONDS, TimeUnit.SECONDS))
+                    process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Send the same request to every worker. Every request is sent before
+     * any reply is read, so the workers make the pass at the same time
+     *
+     * @param request the request
+     * @throws IOException if a worker can't be reached
+     */
+    private void broadcast(ByteArrayOutputStream request) throws IOException {
+        for(DataOutputStream stream : out){
+            request.writeTo(stream);
+            stream.flush();
+        }
+    }
+
+    /**
+     * Wait for a worker's reply
+     *
+     * @param w the worker
+     * @return where to read the answer from
+     * @throws IOException if the worker went away or the request failed
+     */
+    private DataInputStream reply(int w) throws IOException {
+        int status = in[w].read();
+        if(status < 0)
+            throw new EOFException("Shard worker " + w + " went away");
+        if(status != ShardWorker.OK)
+            throw new IOException("Shard worker " + w + " failed, " +
+                    in[w].readUTF());
+        return in[w];
+    }
+
+    /**
+     * Write the tree so far for a pass. Counted and held nodes are listed
+     * in the order they are written, which is the order the workers answer
+     * about them in
+     *
+     * @param request where to write the tree
+     * @param node the root of the tree
+     * @param counted gets the counted nodes in tree order
+     * @param held gets the held nodes in tree order
+     * @throws IOException if the tree can't be written
+     */
+    private static void writeNode(DataOutputStream request,
+                                  StreamingLearner.Node node,
+                                  List<StreamingLearner.Node> counted,
+                                  List<StreamingLearner.Node> held)
+            throws IOException {
+        if(node.children != null) {
+            request.writeByte(ShardWorker.SPLIT);
+            request.writeByte(node.attribute);
+            writeNode(request, node.children[0], counted, held);
+            writeNode(request, node.children[1], counted, held);
+        } else if(node.stats != null) {
+            request.writeByte(ShardWorker.COUNTED);
+            request.writeLong(node.attr);
+            counted.add(node);
+        } else if(node.rows != null) {
+            request.writeByte(ShardWorker.HELD);
+            held.add(node);
+        } else {
+            request.writeByte(ShardWorker.CLOSED);
+        }
+    }
+
+    /**
+     * Write a stump, its leaves as label codes
+     *
+     * @param request where to write the stump
+     * @param tree the stump
+     * @throws IOException if the stump can't be written
+     */
+    private void writeTree(DataOutputStream request, DecisionTree tree)
+            throws IOException {
+        if(tree instanceof Leaf) {
+            request.writeByte(ShardWorker.LEAF);
+            request.writeByte(Arrays.asList(data.classes())
+                    .indexOf(((Leaf) tree).getLabel()));
+            return;
+        }
+        request.writeByte(ShardWorker.SPLIT);
+        request.writeByte(tree.getAttribute());
+        writeTree(request, tree.getSubtree(0));
+        writeTree(request, tree.getSubtree(1));
+    }
+}
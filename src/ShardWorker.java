@@ -0,0 +1,362 @@
+/*
+ * @filename ShardWorker.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains a worker process for sharded training. It holds some
+ * of the chunks of a feature file in memory and makes the streaming
+ * learners' passes over them when a ShardCoordinator asks, sending back
+ * count tables the coordinator adds up. Many of them can share one box
+ */
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A worker serving one coordinator on the loopback address. The protocol is
+ * big endian binary: each request is a command byte and its arguments, and
+ * each reply is OK and its answer, or FAILED and a message, after which the
+ * worker stops
+ *
+ *  LOAD   utf cache file, u4 examples, u4 first chunk, u4 chunks
+ *         replies u4 examples held
+ *  COUNT  the tree so far, see writeNode
+ *         replies, for each counted node in tree order: u4 count and u4
+ *         last example of each label, and its table. Then for each held
+ *         node in tree order: u4 examples, and u8 features and u1 code of
+ *         each
+ *  BOOST  u8 attributes, u1 1 and the last stump or u1 0, f8 factor, f8
+ *         scale
+ *         replies u4 chunks and the weighted table of each
+ *  LAST   u1 attribute
+ *         replies u4 last example of each label, false side then true
+ *  QUIT   no reply
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class ShardWorker {
+
+    /** The usage message */
+    private static final String USAGE = "Usage: java ShardWorker <port>";
+
+    /** What a worker prints once it is listening, followed by the port */
+    static final String LISTENING = "ShardWorker listening on port ";
+
+    /** Load a shard of the feature file */
+    static final int LOAD = 1;
+
+    /** Count a pass of the tree */
+    static final int COUNT = 2;
+
+    /** Update the weights and count a boosting round */
+    static final int BOOST = 3;
+
+    /** Find the last example of each label on each side */
+    static final int LAST = 4;
+
+    /** End the session */
+    static final int QUIT = 5;
+
+    /** The request worked, its answer follows */
+    static final int OK = 0;
+
+    /** The request failed, a message follows */
+    static final int FAILED = 1;
+
+    /** A node split on an attribute, the attribute and both sides follow */
+    static final int SPLIT = 0;
+
+    /** A node being counted, its attributes follow */
+    static final int COUNTED = 1;
+
+    /** A node being held */
+    static final int HELD = 2;
+
+    /** A node that isn't in the pass */
+    static final int CLOSED = 3;
+
+    /** A leaf of a stump, its label code or -1 follows */
+    static final int LEAF = 4;
+
+    /** The labels, indexed by code */
+    private String[] classes;
+
+    /** How many attributes each example has */
+    private int attributes;
+
+    /** How many examples there are in all the shards */
+    private int size;
+
+    /** The first chunk of the shard */
+    private int first;
+
+    /** The chunks of the shard */
+    private Dataset[] chunks = new Dataset[0];
+
+    /** The boosting weights of each chunk, null until boosting starts */
+    private double[][] weights;
+
+    /** The table of one chunk */
+    private SplitStats part;
+
+    /**
+     * Wait for a coordinator on a loopback port and serve it until it is
+     * done, then exit. Once listening the worker prints LISTENING and the
+     * port, so a port of 0 can be used to get any free one
+     *
+     * @param args the command line args
+     */
+    public static void main(String[] args){
+        if(args.length != 1 || !args[0].matches("[0-9]+")){
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try(ServerSocket server = new ServerSocket(Integer.parseInt(args[0]),
+                1, InetAddress.getLoopbackAddress())) {
+            System.out.println(LISTENING + server.getLocalPort());
+            System.out.flush();
+            new ShardWorker().serve(server.accept());
+        } catch (IOException e) {
+            System.err.println("ShardWorker: could not serve a coordinator");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Answer requests until the coordinator quits, goes away or a request
+     * fails
+     *
+     * @param socket the connection to the coordinator
+     * @throws IOException if the connection breaks
+     */
+    void serve(Socket socket) throws IOException {
+        try(socket;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(),
+                            1 << 16))) {
+            socket.setTcpNoDelay(true);
+            int command;
+            while((command = in.read()) >= 0 && command != QUIT){
+                ByteArrayOutputStream reply = new ByteArrayOutputStream();
+                try {
+                    handle(command, in, new DataOutputStream(reply));
+                } catch (IOException | RuntimeException e) {
+                    out.writeByte(FAILED);
+                    out.writeUTF(String.valueOf(e));
+                    out.flush();
+                    return;
+                }
+                out.writeByte(OK);
+                reply.writeTo(out);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Read a request's arguments and work out its answer
+     *
+     * @param command the command byte
+     * @param in where the arguments come from
+     * @param out where to put the answer
+     * @throws IOException if the shard can't be read or the request is bad
+     */
+    private void handle(int command, DataInputStream in, DataOutputStream out)
+            throws IOException {
+        switch(command){
+            case LOAD:
+                load(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+                int held = 0;
+                for(Dataset chunk : chunks)
+                    held += chunk.size();
+                out.writeInt(held);
+                break;
+            case COUNT:
+                count(in, out);
+                break;
+            case BOOST:
+                boost(in, out);
+                break;
+            case LAST:
+                int attribute = in.readByte();
+                int[][] last = new int[2][classes.length];
+                for(int[] side : last)
+                    Arrays.fill(side, -1);
+                for(int k = 0; k < chunks.length; k++)
+                    StreamingLearner.last(chunks[k], FeatureFile.start(
+                            first + k), attribute, last);
+                for(int[] side : last)
+                    for(int c : side)
+                        out.writeInt(c);
+                break;
+            default:
+                throw new IOException("Unknown command " + command);
+        }
+    }
+
+    /**
+     * Read the shard's chunks into memory
+     *
+     * @param cache the feature cache file
+     * @param size how many examples the coordinator's file has
+     * @param first the first chunk of the shard
+     * @param count how many chunks the shard has
+     * @throws IOException if the file can't be read or isn't the
+     *                     coordinator's
+     */
+    private void load(String cache, int size, int first, int count)
+            throws IOException {
+        try(FeatureFile file = FeatureFile.open(Paths.get(cache), null)) {
+            if(file == null || file.size() != size ||
+                    first + count > file.chunks())
+                throw new IOException("'" + cache + "' is not the feature " +
+                        "file being trained on");
+            this.classes = file.classes();
+            this.attributes = file.attributes();
+            this.size = size;
+            this.first = first;
+            this.chunks = new Dataset[count];
+            this.weights = null;
+            this.part = new SplitStats(attributes, classes.length);
+            for(int k = 0; k < count; k++)
+                chunks[k] = file.chunk(first + k);
+        }
+    }
+
+    /**
+     * Make a pass of the tree over the shard
+     *
+     * @param in where the tree comes from
+     * @param out where to put the counts and held examples
+     * @throws IOException if the tree is bad
+     */
+    private void count(DataInputStream in, DataOutputStream out)
+            throws IOException {
+        List<StreamingLearner.Node> counted = new ArrayList<>();
+        List<StreamingLearner.Node> held = new ArrayList<>();
+        StreamingLearner.Node root = readNode(in, counted, held);
+        StreamingLearner.TreePass pass = new StreamingLearner.TreePass(root,
+                counted);
+        for(int k = 0; k < chunks.length; k++)
+            pass.add(chunks[k], FeatureFile.start(first + k));
+
+        for(StreamingLearner.Node node : counted){
+            for(int count : node.counts)
+                out.writeInt(count);
+            for(int last : node.last)
+                out.writeInt(last);
+            node.stats.write(out, node.attr);
+        }
+        for(StreamingLearner.Node node : held){
+            out.writeInt(node.held);
+            for(int i = 0; i < node.held; i++){
+                out.writeLong(node.rows[i]);
+                out.writeByte(node.codes[i]);
+            }
+        }
+    }
+
+    /**
+     * Update the shard's weights and count each chunk for the next stump
+     *
+     * @param in where the last stump and update come from
+     * @param out where to put the tables
+     * @throws IOException if the stump is bad
+     */
+    private void boost(DataInputStream in, DataOutputStream out)
+            throws IOException {
+        long attr = in.readLong();
+        DecisionTree last = in.readBoolean() ? readTree(in) : null;
+        double factor = in.readDouble();
+        double scale = in.readDouble();
+        if(last != null && weights == null)
+            throw new IOException("Boosting has to start with no stump");
+        if(weights == null) {
+            weights = new double[chunks.length][];
+            for(int k = 0; k < chunks.length; k++)
+                weights[k] = new double[chunks[k].size()];
+        }
+
+        out.writeInt(chunks.length);
+        for(int k = 0; k < chunks.length; k++){
+            StreamingLearner.boost(chunks[k], weights[k], last, factor,
+                    scale, 1.0 / size, attr, part);
+            part.write(out, attr);
+        }
+    }
+
+    /**
+     * Read the tree so far. Counted nodes get fresh tables and held nodes
+     * room for the shard's examples
+     *
+     * @param in where the tree comes from
+     * @param counted gets the counted nodes in tree order
+     * @param held gets the held nodes in tree order
+     * @return the root of the tree
+     * @throws IOException if the tree is bad
+     */
+    private StreamingLearner.Node readNode(DataInput in,
+                                           List<StreamingLearner.Node> counted,
+                                           List<StreamingLearner.Node> held)
+            throws IOException {
+        int kind = in.readByte();
+        switch(kind){
+            case SPLIT:
+                StreamingLearner.Node split = new StreamingLearner.Node(0, 0,
+                        0);
+                split.attribute = in.readByte();
+                split.children = new StreamingLearner.Node[]{
+                        readNode(in, counted, held),
+                        readNode(in, counted, held)};
+                return split;
+            case COUNTED:
+                StreamingLearner.Node node = new StreamingLearner.Node(
+                        in.readLong(), 0, 0);
+                node.count(attributes, classes.length);
+                counted.add(node);
+                return node;
+            case HELD:
+                StreamingLearner.Node holding = new StreamingLearner.Node(0,
+                        0, 0);
+                holding.hold();
+                held.add(holding);
+                return holding;
+            case CLOSED:
+                return new StreamingLearner.Node(0, 0, 0);
+            default:
+                throw new IOException("Unknown tree node " + kind);
+        }
+    }
+
+    /**
+     * Read a stump written by ShardCoordinator
+     *
+     * @param in where the stump comes from
+     * @return the stump
+     * @throws IOException if the stump is bad
+     */
+    private DecisionTree readTree(DataInput in) throws IOException {
+        int kind = in.readByte();
+        if(kind == LEAF) {
+            int code = in.readByte();
+            return new Leaf(code < 0 ? null : classes[code]);
+        }
+        if(kind != SPLIT)
+            throw new IOException("Unknown stump node " + kind);
+        DecisionTree tree = new DecisionTree(in.readByte());
+        tree.addSubtree(readTree(in));
+        tree.addSubtree(readTree(in));
+        return tree;
+    }
+}
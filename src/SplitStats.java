@@ -0,0 +1,514 @@
+/*
+ * @filename SplitStats.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains the sufficient statistics for choosing a split at a
+ * node. One pass over the node's examples fills a table of counts for every
+ * attribute, and the remainder of every attribute is then scored straight
+ * from the table instead of re-walking the examples once per attribute
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The count table for one node. For every attribute it holds how many
+ * examples (and how much weight) fall in each cell of
+ * (feature false, feature true) x (the class codes of the dataset)
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class SplitStats {
+
+    /**
+     * Attributes times examples at a node above which the attributes are
+     * counted and scored across the worker pool
+     */
+    private static final long PARALLEL_WORK = 1L << 18;
+
+    /** How many classes the dataset has */
+    private final int classes;
+
+    /**
+     * The unweighted counts, counts[(attr * 2 + feature) * classes + code]
+     */
+    private final int[] counts;
+
+    /**
+     * The weighted counts, sums[(attr * 2 + feature) * (classes + 1)] is the
+     * weight on that side of the split and the cells after it are the weight
+     * of each class on that side
+     */
+    private final double[] sums;
+
+    /** Whether the last count filled in the weights */
+    private boolean weighted;
+
+    /** How many examples were counted */
+    private int size;
+
+    /** The total weight of the examples counted */
+    private double total;
+
+    /** The bits of the examples being counted, all clear between counts */
+    private long[] node = new long[0];
+
+    /**
+     * Create an empty table. One table is made per learner and refilled at
+     * every node, so no counting allocates
+     *
+     * @param attributes how many attributes the dataset has
+     * @param classes how many classes the dataset has
+     */
+    public SplitStats(int attributes, int classes){
+        this.classes = classes;
+        this.counts = new int[attributes * 2 * classes];
+        this.sums = new double[attributes * 2 * (classes + 1)];
+    }
+
+    /**
+     * Fill the unweighted table for a node in one pass over its examples
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes to count
+     */
+    public void count(Dataset data, int[] examples, int from, int to,
+                      long attr){
+        reset(attr, false);
+        add(data, examples, from, to, attr);
+    }
+
+    /**
+     * Add more examples to the unweighted table, for a node whose examples
+     * are counted a chunk at a time. When the examples are packed densely
+     * enough into the words they cover, more than one per label per word,
+     * each attribute is counted a word at a time with Long.bitCount of its
+     * column and each label's mask, and otherwise, or if an example is in
+     * the range twice, an example at a time. The counts are the same
+     * either way. Weighted tables are always added up an example at a
+     * time, since the order the weights are added in changes the sums
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the examples to add, inclusive
+     * @param to the last index of the examples to add, exclusive
+     * @param attr bit mask of the attributes to count
+     */
+    public void add(Dataset data, int[] examples, int from, int to,
+                    long attr){
+        size += to - from;
+        if(from == to)
+            return;
+        int first = Integer.MAX_VALUE, last = 0;
+        for(int j = from; j < to; j++){
+            first = Math.min(first, examples[j]);
+            last = Math.max(last, examples[j]);
+        }
+        int lo = first >>> 6, hi = last >>> 6;
+        boolean dense = (long) (hi - lo + 1) * classes <= to - from;
+        if(dense) {
+            if(node.length <= hi)
+                node = new long[Dataset.words(data.size())];
+            for(int j = from; j < to && dense; j++){
+                long bit = 1L << examples[j];
+                // an example drawn twice has to be counted twice
+                dense = (node[examples[j] >>> 6] & bit) == 0;
+                node[examples[j] >>> 6] |= bit;
+            }
+            if(!dense)
+                Arrays.fill(node, lo, hi + 1, 0);
+        }
+        if(!dense) {
+            for(int j = from; j < to; j++){
+                int i = examples[j];
+                int code = data.code(i);
+                for(long bits = attr; bits != 0; bits &= bits - 1){
+                    int a = Long.numberOfTrailingZeros(bits);
+                    int side = a * 2 + (data.getFeature(i, a) ? 1 : 0);
+                    counts[side * classes + code]++;
+                }
+            }
+            return;
+        }
+
+        for(int c = 0; c < classes; c++){
+            long[] mask = data.mask(c);
+            for(int w = lo; w <= hi; w++){
+                long m = mask[w] & node[w];
+                if(m == 0)
+                    continue;
+                int n = Long.bitCount(m);
+                for(long bits = attr; bits != 0; bits &= bits - 1){
+                    int a = Long.numberOfTrailingZeros(bits);
+                    int on = Long.bitCount(data.column(a)[w] & m);
+                    counts[(a * 2 + 1) * classes + c] += on;
+                    counts[a * 2 * classes + c] += n - on;
+                }
+            }
+        }
+        Arrays.fill(node, lo, hi + 1, 0);
+    }
+
+    /**
+     * Fill the weighted table for a node in one pass over its examples.
+     * The weights are added up in the node's example order so the sums come
+     * out the same as adding them up one attribute at a time
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes to count
+     * @param weights the weight of every example in the training data
+     */
+    public void count(Dataset data, int[] examples, int from, int to,
+                      long attr, double[] weights){
+        reset(attr, true);
+        add(data, examples, from, to, attr, weights);
+    }
+
+    /**
+     * Add more examples to the weighted table
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the examples to add, inclusive
+     * @param to the last index of the examples to add, exclusive
+     * @param attr bit mask of the attributes to count
+     * @param weights the weight of every example in the training data
+     */
+    public void add(Dataset data, int[] examples, int from, int to,
+                    long attr, double[] weights){
+        size += to - from;
+        for(int j = from; j < to; j++){
+            int i = examples[j];
+            double weight = weights[i];
+            int code = data.code(i);
+            for(long bits = attr; bits != 0; bits &= bits - 1){
+                int a = Long.numberOfTrailingZeros(bits);
+                int side = a * 2 + (data.getFeature(i, a) ? 1 : 0);
+                int cell = side * (classes + 1);
+                counts[side * classes + code]++;
+                sums[cell] += weight;
+                sums[cell + 1 + code] += weight;
+            }
+            total += weight;
+        }
+    }
+
+    /**
+     * Add another table's counts and weights to this one. Tables filled
+     * from parts of the examples add up to the table of all of them, and
+     * adding the parts in the same order always gives the same sums
+     *
+     * @param other the table to add, filled for the same attributes
+     * @param attr bit mask of the attributes to add
+     */
+    public void add(SplitStats other, long attr){
+        for(long bits = attr; bits != 0; bits &= bits - 1){
+            int side = Long.numberOfTrailingZeros(bits) * 2;
+            for(int c = side * classes; c < (side + 2) * classes; c++)
+                counts[c] += other.counts[c];
+            for(int c = side * (classes + 1); c < (side + 2) *
+                    (classes + 1); c++)
+                sums[c] += other.sums[c];
+        }
+        size += other.size;
+        total += other.total;
+    }
+
+    /**
+     * Send the table's cells for some attributes, so a table filled in
+     * another process can be added to this one
+     *
+     * @param out where to write the table
+     * @param attr bit mask of the attributes to write
+     * @throws IOException if the table can't be written
+     */
+    void write(DataOutput out, long attr) throws IOException {
+        out.writeBoolean(weighted);
+        out.writeInt(size);
+        out.writeDouble(total);
+        for(long bits = attr; bits != 0; bits &= bits - 1){
+            int side = Long.numberOfTrailingZeros(bits) * 2;
+            for(int c = side * classes; c < (side + 2) * classes; c++)
+                out.writeInt(counts[c]);
+            if(weighted)
+                for(int c = side * (classes + 1); c < (side + 2) *
+                        (classes + 1); c++)
+                    out.writeDouble(sums[c]);
+        }
+    }
+
+    /**
+     * Replace the table's cells for some attributes with ones written by
+     * write
+     *
+     * @param in where to read the table from
+     * @param attr bit mask of the attributes written
+     * @throws IOException if the table can't be read
+     */
+    void read(DataInput in, long attr) throws IOException {
+        clear(attr);
+        weighted = in.readBoolean();
+        size = in.readInt();
+        total = in.readDouble();
+        for(long bits = attr; bits != 0; bits &= bits - 1){
+            int side = Long.numberOfTrailingZeros(bits) * 2;
+            for(int c = side * classes; c < (side + 2) * classes; c++)
+                counts[c] = in.readInt();
+            if(weighted)
+                for(int c = side * (classes + 1); c < (side + 2) *
+                        (classes + 1); c++)
+                    sums[c] = in.readDouble();
+        }
+    }
+
+    /**
+     * Empty the table before adding to it
+     *
+     * @param attr bit mask of the attributes to count
+     * @param weighted whether the weights will be added up too
+     */
+    public void reset(long attr, boolean weighted){
+        clear(attr);
+        this.weighted = weighted;
+        this.size = 0;
+    }
+
+    /**
+     * How many examples on one side of an attribute have a label
+     *
+     * @param attr the attribute
+     * @param feature which side
+     * @param code the code of the label
+     * @return the number of examples
+     */
+    public int count(int attr, boolean feature, int code){
+        return counts[(attr * 2 + (feature ? 1 : 0)) * classes + code];
+    }
+
+    /**
+     * The weight of the examples on one side of an attribute with a label
+     *
+     * @param attr the attribute
+     * @param feature which side
+     * @param code the code of the label
+     * @return the weight
+     */
+    public double weight(int attr, boolean feature, int code){
+        return sums[(attr * 2 + (feature ? 1 : 0)) * (classes + 1) + 1 +
+                code];
+    }
+
+    /**
+     * The total weight of the examples counted
+     *
+     * @return the weight
+     */
+    public double total(){
+        return total;
+    }
+
+    /**
+     * Pick the attribute with the smallest remainder. Ties go to the lowest
+     * numbered attribute
+     *
+     * @param attr bit mask of the attributes to choose from
+     * @return the most important attribute, -1 if there are none
+     */
+    public int best(long attr){
+        int championAttr = -1;
+        double championRemainder = Double.MAX_VALUE;
+        for(long bits = attr; bits != 0; bits &= bits - 1){
+            int a = Long.numberOfTrailingZeros(bits);
+            double rem = remainder(a);
+            if( rem < championRemainder ){
+                championAttr = a;
+                championRemainder = rem;
+            }
+        }
+        return championAttr;
+    }
+
+    /**
+     * Check if a node is big enough that scoring its attributes across the
+     * worker pool is worth it
+     *
+     * @param attr bit mask of the attributes to score
+     * @param examples how many examples are at the node
+     * @return true if the scoring should be done in parallel
+     */
+    public static boolean worthSplitting(long attr, int examples){
+        int attributes = Long.bitCount(attr);
+        return attributes > 1 && ForkJoinPool.getCommonPoolParallelism() > 1
+                && (long) attributes * examples >= PARALLEL_WORK;
+    }
+
+    /**
+     * Count and score the attributes in groups across the common fork/join
+     * pool. Each group gets its own table, and the group champions are
+     * compared in attribute order so ties go to the lowest numbered
+     * attribute, the same as best()
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes to choose from
+     * @param weights the weight of every example, null to count unweighted
+     * @return the most important attribute
+     */
+    public static int parallelBest(Dataset data, int[] examples, int from,
+                                   int to, long attr, double[] weights){
+        int groups = Math.min(Long.bitCount(attr),
+                ForkJoinPool.getCommonPoolParallelism());
+        int perGroup = (Long.bitCount(attr) + groups - 1) / groups;
+        List<ScoreTask> tasks = new ArrayList<>();
+        long bits = attr;
+        while(bits != 0){
+            long group = 0;
+            for(int j = 0; j < perGroup && bits != 0; j++){
+                group |= bits & -bits;
+                bits &= bits - 1;
+            }
+            tasks.add(new ScoreTask(data, examples, from, to, group,
+                    weights));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        int championAttr = -1;
+        double championRemainder = Double.MAX_VALUE;
+        for(ScoreTask task : tasks){
+            if(task.remainder < championRemainder){
+                championAttr = task.join();
+                championRemainder = task.remainder;
+            }
+        }
+        return championAttr;
+    }
+
+    /**
+     * Calculates the remainder for an attribute from the table
+     *
+     * @param attr the attribute to calculate
+     * @return the remainder
+     */
+    public double remainder(int attr){
+        return side(attr * 2 + 1) + side(attr * 2);
+    }
+
+    /**
+     * Calculates the part of the remainder from one side of the split
+     *
+     * @param side the side, attr * 2 + feature
+     * @return the weighted entropy of that side
+     */
+    private double side(int side){
+        int from = side * classes;
+        int n = 0;
+        for(int c = from; c < from + classes; c++)
+            n += counts[c];
+        if(n == 0)
+            return 0;
+        if(!weighted)
+            return (double) n / size
+                    * Utils.entropy(counts, from, classes, n);
+        int cell = side * (classes + 1);
+        return sums[cell] / total
+                * Utils.entropy(sums, cell + 1, classes, sums[cell]);
+    }
+
+    /**
+     * Zero the cells of the attributes about to be counted
+     *
+     * @param attr bit mask of the attributes
+     */
+    private void clear(long attr){
+        for(long bits = attr; bits != 0; bits &= bits - 1){
+            int side = Long.numberOfTrailingZeros(bits) * 2;
+            Arrays.fill(counts, side * classes, (side + 2) * classes, 0);
+            Arrays.fill(sums, side * (classes + 1),
+                    (side + 2) * (classes + 1), 0);
+        }
+        total = 0;
+    }
+
+    /**
+     * A fork/join task that counts and scores one group of attributes
+     */
+    private static class ScoreTask extends RecursiveTask<Integer> {
+
+        /** Needed since ForkJoinTask is Serializable, but it is never saved */
+        private static final long serialVersionUID = 1L;
+
+        /** The training data */
+        private final Dataset data;
+
+        /** The shared array of example indices */
+        private final int[] examples;
+
+        /** The node's range of examples */
+        private final int from, to;
+
+        /** Bit mask of the attributes in this group */
+        private final long attr;
+
+        /** The weight of every example, null to count unweighted */
+        private final double[] weights;
+
+        /** The remainder of the group champion, set by compute() */
+        private double remainder = Double.MAX_VALUE;
+
+        /**
+         * Create a task for a group of attributes
+         *
+         * @param data the training data
+         * @param examples the shared array of example indices
+         * @param from the first index of the node's examples, inclusive
+         * @param to the last index of the node's examples, exclusive
+         * @param attr bit mask of the attributes in this group
+         * @param weights the weight of every example, null if unweighted
+         */
+        private ScoreTask(Dataset data, int[] examples, int from, int to,
+                          long attr, double[] weights){
+            this.data = data;
+            this.examples = examples;
+            this.from = from;
+            this.to = to;
+            this.attr = attr;
+            this.weights = weights;
+        }
+
+        /**
+         * Count the group and pick its champion
+         *
+         * @return the best attribute in the group
+         */
+        @Override
+        protected Integer compute() {
+            SplitStats stats = new SplitStats(data.attributes(),
+                    data.classes().length);
+            if(weights == null)
+                stats.count(data, examples, from, to, attr);
+            else
+                stats.count(data, examples, from, to, attr, weights);
+            int champion = stats.best(attr);
+            remainder = stats.remainder(champion);
+            return champion;
+        }
+    }
+}
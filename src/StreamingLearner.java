@@ -0,0 +1,801 @@
+/*
+ * @filename StreamingLearner.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains the decision tree and AdaBoost learners for example
+ * files too big for memory. They make passes over a FeatureFile a chunk at a
+ * time and keep only the count tables the next choice needs, so memory
+ * depends on the chunk size and the budget given, not on the examples
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The streaming learners. The tree is grown a level at a time: each pass
+ * sends every example down the tree so far and counts it into the table of
+ * the open node it reaches, and then the open nodes are split. A node with
+ * few enough examples is instead held in memory during a pass and its whole
+ * subtree learned there. The counts are exact, so the tree is the same one
+ * decisionTreeLearn makes from the examples in memory
+ *
+ * Boosting takes one pass per round. The pass applies the last round's
+ * weight update to each chunk and counts the chunk for the next stump, and
+ * the weights are kept in a scratch file next to the feature file. Each
+ * chunk is counted into its own table and the tables are added up in chunk
+ * order, so the sums only depend on the chunks. Ensemble.adaboostLearn adds
+ * up the examples in memory the same way, so the ensembles are the same
+ * bit for bit
+ *
+ * The passes themselves are ExamplePasses, made here over the feature file
+ * or by a ShardCoordinator over worker processes. Either way each chunk goes
+ * through the same code below, so the models are the same
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public abstract class StreamingLearner {
+
+    /** How many examples can be held in memory by default */
+    public static final int DEFAULT_MEMORY = 1 << 22;
+
+    /** The most tree nodes counted in one pass */
+    private static final int MAX_NODES = 1024;
+
+    /** The indices of a chunk's examples, in order, do not modify */
+    private static final int[] INDICES = new int[FeatureFile.CHUNK];
+
+    static {
+        for(int i = 0; i < INDICES.length; i++)
+            INDICES[i] = i;
+    }
+
+    /**
+     * Learn a decision tree a level at a time
+     *
+     * @param data the training data
+     * @param attr bit mask of the attributes to learn with
+     * @param depth how deep we want the tree to go
+     * @param memory the most examples held in memory at once for learning
+     *               small subtrees, which also bounds the count tables
+     * @param cutoff subtrees held in memory with fewer examples than this
+     *               at a node are not split across threads
+     * @param listener told about the training
+     * @return the decision tree of specified depth that learns the examples
+     * @throws IOException if the feature file can't be read
+     */
+    public static DecisionTree decisionTreeLearn(FeatureFile data, long attr,
+                                                 int depth, int memory,
+                                                 int cutoff,
+                                                 TrainingListener listener)
+            throws IOException {
+        try(ExamplePasses passes = passes(data)) {
+            return decisionTreeLearn(passes, attr, depth, memory, cutoff,
+                    listener);
+        }
+    }
+
+    /**
+     * Learn a decision tree a level at a time from any kind of passes
+     *
+     * @param data the passes over the training data
+     * @param attr bit mask of the attributes to learn with
+     * @param depth how deep we want the tree to go
+     * @param memory the most examples held in memory at once for learning
+     *               small subtrees, which also bounds the count tables
+     * @param cutoff subtrees held in memory with fewer examples than this
+     *               at a node are not split across threads
+     * @param listener told about the training
+     * @return the decision tree of specified depth that learns the examples
+     * @throws IOException if a pass fails
+     */
+    static DecisionTree decisionTreeLearn(ExamplePasses data, long attr,
+                                          int depth, int memory, int cutoff,
+                                          TrainingListener listener)
+            throws IOException {
+        listener.started("Decision Tree", data.size(), data.attributes());
+        int classes = data.classes().length;
+        int nodes = (int) Math.max(1, Math.min(MAX_NODES, memory /
+                Math.max(1, 2L * data.attributes() * (classes + 1))));
+
+        Node root = new Node(attr, depth, data.size());
+        Deque<Node> open = new ArrayDeque<>();
+        if(root.size == 0)
+            root.tree = new Leaf(null);
+        else
+            open.add(root);
+        while(!open.isEmpty()){
+            // take the open nodes in breadth first order until the pass is
+            // full
+            List<Node> counted = new ArrayList<>();
+            List<Node> held = new ArrayList<>();
+            long holding = 0;
+            while(!open.isEmpty()){
+                Node node = open.peek();
+                if(node.size <= memory) {
+                    if(holding + node.size > memory)
+                        break;
+                    holding += node.size;
+                    node.hold();
+                    held.add(open.remove());
+                } else {
+                    if(counted.size() == nodes)
+                        break;
+                    node.count(data.attributes(), classes);
+                    counted.add(open.remove());
+                }
+            }
+            data.count(root, counted);
+
+            for(Node node : counted)
+                split(node, data.classes(), open, listener);
+            for(Node node : held)
+                node.tree = DecisionTree.subtreeLearn(node.dataset(
+                        data.attributes(), data.classes()), node.attr,
+                        node.depth, cutoff, listener);
+        }
+        DecisionTree tree = root.build();
+        listener.finished(tree);
+        return tree;
+    }
+
+    /**
+     * Make the passes over a feature file
+     *
+     * @param data the training data
+     * @return the passes, closing them leaves the file open
+     */
+    static ExamplePasses passes(FeatureFile data){
+        return new FilePasses(data);
+    }
+
+    /**
+     * Turn a counted node into a leaf or a split, the same way
+     * decisionTreeLearn decides. Children whose answer is already known
+     * from the counts are made leaves, the rest are opened
+     *
+     * @param node the counted node
+     * @param classes the labels, indexed by code
+     * @param open the open nodes
+     * @param listener told about the node
+     */
+    private static void split(Node node, String[] classes, Deque<Node> open,
+                              TrainingListener listener){
+        long start = listener == TrainingListener.NONE ? 0 :
+                System.nanoTime();
+        String majority = majority(node.counts, node.last, classes);
+        int present = 0;
+        for(int count : node.counts)
+            if(count > 0)
+                present++;
+        if(node.depth == 0 || present == 1 || node.attr == 0) {
+            node.tree = new Leaf(majority);
+        } else {
+            node.attribute = node.stats.best(node.attr);
+            long newAttrs = node.attr & ~(1L << node.attribute);
+            node.children = new Node[2];
+            for(int f = 0; f < 2; f++){
+                int size = 0, label = -1, labels = 0;
+                for(int c = 0; c < classes.length; c++){
+                    int count = node.stats.count(node.attribute, f == 1, c);
+                    size += count;
+                    if(count > 0) {
+                        label = c;
+                        labels++;
+                    }
+                }
+                Node child = new Node(newAttrs, node.depth - 1, size);
+                if(size == 0)
+                    child.tree = new Leaf(child.depth == 0 ? null :
+                            majority);
+                else if(labels == 1)
+                    child.tree = new Leaf(classes[label]);
+                else
+                    open.add(child);
+                node.children[f] = child;
+            }
+        }
+        if(listener != TrainingListener.NONE)
+            listener.node(node.size, node.tree == null ? node.attribute : -1,
+                    System.nanoTime() - start);
+        node.stats = null;
+        node.counts = null;
+        node.last = null;
+    }
+
+    /**
+     * Find the label with the most examples. Ties go to the label whose
+     * last example comes first, like Utils.countMajority
+     *
+     * @param counts how many examples have each label
+     * @param last the last example with each label
+     * @param classes the labels, indexed by code
+     * @return the label, null if there are no examples
+     */
+    private static String majority(int[] counts, int[] last,
+                                   String[] classes){
+        int best = -1;
+        for(int c = 0; c < counts.length; c++)
+            if(counts[c] > 0 && (best < 0 || counts[c] > counts[best] ||
+                    (counts[c] == counts[best] && last[c] < last[best])))
+                best = c;
+        return best < 0 ? null : classes[best];
+    }
+
+    /**
+     * AdaBoost with one pass over the examples per round, SAMME with more
+     * than two labels like Ensemble.adaboostLearn. The run stops early if
+     * a stump gets every example right
+     *
+     * @param data the training data
+     * @param K how many iterations to do
+     * @param attr bit mask of the attributes to learn with, not empty
+     * @param listener told about the training
+     * @return the Ensemble of hypothesises, not compacted
+     * @throws IOException if the feature file can't be read or the weights
+     *                     can't be kept
+     */
+    public static Ensemble adaboostLearn(FeatureFile data, int K, long attr,
+                                         TrainingListener listener)
+            throws IOException {
+        try(ExamplePasses passes = passes(data)) {
+            return adaboostLearn(passes, K, attr, listener);
+        }
+    }
+
+    /**
+     * AdaBoost with one pass per round from any kind of passes
+     *
+     * @param data the passes over the training data
+     * @param K how many iterations to do
+     * @param attr bit mask of the attributes to learn with, not empty
+     * @param listener told about the training
+     * @return the Ensemble of hypothesises, not compacted
+     * @throws IOException if a pass fails
+     */
+    static Ensemble adaboostLearn(ExamplePasses data, int K, long attr,
+                                  TrainingListener listener)
+            throws IOException {
+        if(attr == 0)
+            throw new IllegalArgumentException("Boosting needs at least " +
+                    "one attribute");
+        listener.started("AdaBoost", data.size(), data.attributes());
+        boolean timed = listener != TrainingListener.NONE;
+        String[] classes = data.classes();
+        SplitStats round = new SplitStats(data.attributes(), classes.length);
+
+        List<DecisionTree> h = new ArrayList<>();
+        List<Double> z = new ArrayList<>();
+        DecisionTree last = null;
+        double factor = 1, scale = 1;
+        for(int k = 0; k < K; k++){
+            long start = timed ? System.nanoTime() : 0;
+            round.reset(attr, true);
+            data.boost(last, factor, scale, attr, round);
+
+            DecisionTree stump = stump(classes, round, attr, null);
+            if(stump == null)
+                stump = stump(classes, round, attr,
+                        data.last(round.best(attr)));
+            double wrong = wrong(classes, round, stump);
+            double error = wrong / round.total();
+            double alpha;
+            if(error != 0) {
+                factor = error / (1.0 - error) / (classes.length - 1);
+                scale = (round.total() - wrong) * factor + wrong;
+                alpha = Math.log((1.0 - error)/error) +
+                        Math.log(classes.length - 1);
+            } else {
+                alpha = Double.MAX_VALUE;
+            }
+            h.add(stump);
+            z.add(alpha);
+            last = stump;
+            if(timed)
+                listener.round(k, stump, error, alpha,
+                        System.nanoTime() - start);
+            if(error == 0)
+                break;
+        }
+
+        double[] alphas = new double[z.size()];
+        for(int i = 0; i < alphas.length; i++)
+            alphas[i] = z.get(i);
+        Ensemble ensemble = new Ensemble(classes.clone(),
+                h.toArray(new DecisionTree[0]), alphas, null, 0);
+        listener.finished(ensemble);
+        return ensemble;
+    }
+
+    /**
+     * Pick the stump from a round's table, the same way stumpLearn does
+     * with a depth of one. If the heaviest labels on a side are tied, the
+     * last example of each label on each side breaks the tie like
+     * Utils.countMajority, so without them the stump can't always be
+     * picked and the caller has to find them and ask again
+     *
+     * @param classes the labels, indexed by code
+     * @param round the weighted table of every example
+     * @param attr bit mask of the attributes to learn with, not empty
+     * @param last last[feature][code] on the best attribute, or null
+     * @return the stump, or null if there is a tie and last is null
+     */
+    static DecisionTree stump(String[] classes, SplitStats round, long attr,
+                              int[][] last){
+        int any = Long.numberOfTrailingZeros(attr);
+        int present = 0, label = -1;
+        for(int c = 0; c < classes.length; c++)
+            if(round.count(any, false, c) + round.count(any, true, c) > 0) {
+                present++;
+                label = c;
+            }
+        if(present == 1)
+            return new Leaf(classes[label]);
+
+        int best = round.best(attr);
+        DecisionTree stump = new DecisionTree(best);
+        for(int f = 0; f < 2; f++){
+            int heaviest = -1;
+            for(int c = 0; c < classes.length; c++){
+                if(round.count(best, f == 1, c) == 0)
+                    continue;
+                double weight = round.weight(best, f == 1, c);
+                if(heaviest >= 0 && weight == round.weight(best, f == 1,
+                        heaviest)) {
+                    if(last == null)
+                        return null;
+                    if(last[f][c] < last[f][heaviest])
+                        heaviest = c;
+                } else if(heaviest < 0 || weight > round.weight(best,
+                        f == 1, heaviest)) {
+                    heaviest = c;
+                }
+            }
+            stump.addSubtree(new Leaf(heaviest < 0 ? null :
+                    classes[heaviest]));
+        }
+        return stump;
+    }
+
+    /**
+     * Add up the weight a stump gets wrong from a round's table, a cell at
+     * a time in code order
+     *
+     * @param classes the labels, indexed by code
+     * @param round the weighted table of every example
+     * @param stump the stump picked from the table
+     * @return the weight of the examples the stump gets wrong
+     */
+    static double wrong(String[] classes, SplitStats round,
+                        DecisionTree stump){
+        double wrong = 0;
+        if(stump instanceof Leaf)
+            return wrong;
+        for(int f = 0; f < 2; f++){
+            String label = ((Leaf) stump.getSubtree(f)).getLabel();
+            for(int c = 0; c < classes.length; c++)
+                if(!classes[c].equals(label))
+                    wrong += round.weight(stump.getAttribute(), f == 1, c);
+        }
+        return wrong;
+    }
+
+    /**
+     * Apply the last round's weight update to a chunk and count it for the
+     * next stump. A correct example's weight is multiplied by the factor,
+     * and then every weight is divided by the scale
+     *
+     * @param chunk the chunk
+     * @param w the weights of the chunk's examples, updated in place
+     * @param last the last round's stump, null before the first round
+     * @param factor what the weights of correct examples are multiplied by
+     * @param scale what every weight is then divided by
+     * @param first the weight of every example before the first round
+     * @param attr bit mask of the attributes to count
+     * @param part filled with the chunk's weighted table
+     */
+    static void boost(Dataset chunk, double[] w, DecisionTree last,
+                      double factor, double scale, double first, long attr,
+                      SplitStats part){
+        int n = chunk.size();
+        if(last == null) {
+            Arrays.fill(w, 0, n, first);
+        } else {
+            long[] correct = last.correct(chunk);
+            for(int j = 0; j < n; j++){
+                if((correct[j >>> 6] & (1L << j)) != 0)
+                    w[j] *= factor;
+                w[j] /= scale;
+            }
+        }
+        part.count(chunk, INDICES, 0, n, attr, w);
+    }
+
+    /**
+     * Find the last example of each label on each side of an attribute in
+     * a chunk, over what the chunks before it found
+     *
+     * @param chunk the chunk
+     * @param base the index of the chunk's first example
+     * @param attribute the attribute
+     * @param last last[feature][code], updated
+     */
+    static void last(Dataset chunk, int base, int attribute, int[][] last){
+        for(int i = 0; i < chunk.size(); i++)
+            last[chunk.getFeature(i, attribute) ? 1 : 0][chunk.code(i)] =
+                    base + i;
+    }
+
+    /**
+     * The passes over a feature file, with the boosting weights in a
+     * scratch file next to it
+     */
+    private static class FilePasses implements ExamplePasses {
+
+        /** The training data */
+        private final FeatureFile data;
+
+        /** The table of one chunk */
+        private final SplitStats part;
+
+        /** The weights of one chunk */
+        private final double[] w = new double[FeatureFile.CHUNK];
+
+        /** The scratch file of weights, null until boosting starts */
+        private FileChannel weights;
+
+        /** Moves weights to and from the scratch file */
+        private ByteBuffer buffer;
+
+        /**
+         * Create the passes
+         *
+         * @param data the training data
+         */
+        private FilePasses(FeatureFile data){
+            this.data = data;
+            this.part = new SplitStats(data.attributes(),
+                    data.classes().length);
+        }
+
+        /**
+         * How many examples there are
+         *
+         * @return the number of examples
+         */
+        @Override
+        public int size(){
+            return data.size();
+        }
+
+        /**
+         * How many attributes each example has
+         *
+         * @return the number of attributes
+         */
+        @Override
+        public int attributes(){
+            return data.attributes();
+        }
+
+        /**
+         * Get the labels of the examples
+         *
+         * @return the labels, indexed by code, do not modify
+         */
+        @Override
+        public String[] classes(){
+            return data.classes();
+        }
+
+        /**
+         * Send every example down the tree so far, a chunk at a time
+         *
+         * @param root the root of the tree so far
+         * @param counted the nodes being counted in this pass
+         * @throws IOException if the feature file can't be read
+         */
+        @Override
+        public void count(Node root, List<Node> counted) throws IOException {
+            TreePass pass = new TreePass(root, counted);
+            for(int c = 0; c < data.chunks(); c++)
+                pass.add(data.chunk(c), FeatureFile.start(c));
+        }
+
+        /**
+         * Update the weights in the scratch file a chunk at a time and add
+         * each chunk's table to the round's
+         *
+         * @param last the last round's stump, null before the first round
+         * @param factor what the weights of correct examples are multiplied by
+         * @param scale what every weight is then divided by
+         * @param attr bit mask of the attributes to count
+         * @param round the table of the round, added to
+         * @throws IOException if the feature file or weights can't be read
+         */
+        @Override
+        public void boost(DecisionTree last, double factor, double scale,
+                          long attr, SplitStats round) throws IOException {
+            if(weights == null) {
+                Path dir = data.path().toAbsolutePath().getParent();
+                weights = FileChannel.open(Files.createTempFile(dir,
+                        "boosting", ".weights"), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+                buffer = ByteBuffer.allocateDirect(FeatureFile.CHUNK * 8);
+            }
+            for(int c = 0; c < data.chunks(); c++){
+                Dataset chunk = data.chunk(c);
+                int n = chunk.size();
+                long at = (long) FeatureFile.start(c) * 8;
+                if(last != null) {
+                    buffer.clear().limit(n * 8);
+                    FeatureFile.readFully(weights, buffer, at);
+                    buffer.flip().asDoubleBuffer().get(w, 0, n);
+                }
+                StreamingLearner.boost(chunk, w, last, factor, scale,
+                        1.0 / data.size(), attr, part);
+                buffer.clear().asDoubleBuffer().put(w, 0, n);
+                buffer.limit(n * 8);
+                FeatureCache.writeFully(weights, buffer, at);
+                round.add(part, attr);
+            }
+        }
+
+        /**
+         * Find the last example of each label on each side of an attribute
+         *
+         * @param attribute the attribute
+         * @return last[feature][code], -1 if there is none
+         * @throws IOException if the feature file can't be read
+         */
+        @Override
+        public int[][] last(int attribute) throws IOException {
+            int[][] last = new int[2][data.classes().length];
+            for(int[] side : last)
+                Arrays.fill(side, -1);
+            for(int c = 0; c < data.chunks(); c++)
+                StreamingLearner.last(data.chunk(c), FeatureFile.start(c),
+                        attribute, last);
+            return last;
+        }
+
+        /**
+         * Delete the scratch file, the feature file stays open
+         *
+         * @throws IOException if the scratch file can't be closed
+         */
+        @Override
+        public void close() throws IOException {
+            if(weights != null)
+                weights.close();
+        }
+    }
+
+    /**
+     * One pass of the tree over chunks of examples. Every example is sent
+     * down the tree so far, the ones that reach a node being counted are
+     * counted and the ones that reach a node being held are kept
+     */
+    static class TreePass {
+
+        /** The root of the tree so far */
+        private final Node root;
+
+        /** The nodes being counted, each at its slot */
+        private final List<Node> counted;
+
+        /** The slot of the node each example of a chunk reached, or -1 */
+        private final int[] slot = new int[FeatureFile.CHUNK];
+
+        /** The examples of a chunk grouped by slot */
+        private final int[] order = new int[FeatureFile.CHUNK];
+
+        /** Where each slot's group starts in the order */
+        private final int[] starts;
+
+        /**
+         * Get ready for a pass
+         *
+         * @param root the root of the tree so far
+         * @param counted the nodes being counted in this pass
+         */
+        TreePass(Node root, List<Node> counted){
+            this.root = root;
+            this.counted = counted;
+            this.starts = new int[counted.size() + 1];
+            for(int n = 0; n < counted.size(); n++)
+                counted.get(n).slot = n;
+        }
+
+        /**
+         * Send a chunk's examples down the tree
+         *
+         * @param chunk the chunk
+         * @param base the index of the chunk's first example
+         */
+        void add(Dataset chunk, int base){
+            Arrays.fill(starts, 0);
+            for(int i = 0; i < chunk.size(); i++){
+                Node node = root;
+                while(node.children != null)
+                    node = node.children[chunk.getFeature(i, node.attribute)
+                            ? 1 : 0];
+                slot[i] = -1;
+                if(node.stats != null) {
+                    int code = chunk.code(i);
+                    node.counts[code]++;
+                    node.last[code] = base + i;
+                    slot[i] = node.slot;
+                    starts[node.slot + 1]++;
+                } else if(node.rows != null) {
+                    node.keep(chunk, i);
+                }
+            }
+
+            // group the chunk's examples by node and count each group
+            for(int n = 0; n < counted.size(); n++)
+                starts[n + 1] += starts[n];
+            int[] next = Arrays.copyOf(starts, counted.size());
+            for(int i = 0; i < chunk.size(); i++)
+                if(slot[i] >= 0)
+                    order[next[slot[i]]++] = i;
+            for(Node node : counted)
+                node.stats.add(chunk, order, starts[node.slot],
+                        starts[node.slot + 1], node.attr);
+        }
+    }
+
+    /**
+     * A node of a tree being grown a level at a time
+     */
+    static class Node {
+
+        /** Bit mask of the attributes left to test */
+        final long attr;
+
+        /** How deep the subtree can go */
+        final int depth;
+
+        /** How many examples reach the node */
+        final int size;
+
+        /** The attribute the node splits on, once it is split */
+        int attribute = -1;
+
+        /** The two subtrees, once the node is split */
+        Node[] children;
+
+        /** The leaf or subtree learned in memory, once it is done */
+        DecisionTree tree;
+
+        /** The count table, while the node is being counted */
+        SplitStats stats;
+
+        /** How many examples have each label, while being counted */
+        int[] counts;
+
+        /** The last example with each label, while being counted */
+        int[] last;
+
+        /** Where the node is in the list of counted nodes */
+        int slot;
+
+        /** The packed features of the examples, while being held */
+        long[] rows;
+
+        /** The label codes of the examples, while being held */
+        byte[] codes;
+
+        /** How many examples are held */
+        int held;
+
+        /**
+         * Create an open node
+         *
+         * @param attr bit mask of the attributes left to test
+         * @param depth how deep the subtree can go
+         * @param size how many examples reach the node, 0 if not known
+         */
+        Node(long attr, int depth, int size){
+            this.attr = attr;
+            this.depth = depth;
+            this.size = size;
+        }
+
+        /**
+         * Get ready to count the node's examples in the next pass
+         *
+         * @param attributes how many attributes the examples have
+         * @param classes how many labels there are
+         */
+        void count(int attributes, int classes){
+            stats = new SplitStats(attributes, classes);
+            stats.reset(attr, false);
+            counts = new int[classes];
+            last = new int[classes];
+        }
+
+        /**
+         * Get ready to hold the node's examples in the next pass
+         */
+        void hold(){
+            rows = new long[size];
+            codes = new byte[size];
+        }
+
+        /**
+         * Hold an example that reaches the node
+         *
+         * @param chunk the chunk the example is in
+         * @param i the example in the chunk
+         */
+        private void keep(Dataset chunk, int i){
+            long features = 0;
+            for(int a = 0; a < chunk.attributes(); a++)
+                if(chunk.getFeature(i, a))
+                    features |= 1L << a;
+            keep(features, (byte) chunk.code(i));
+        }
+
+        /**
+         * Hold an example that reaches the node, making room if the size
+         * wasn't known
+         *
+         * @param features the packed features of the example
+         * @param code the label code of the example
+         */
+        void keep(long features, byte code){
+            if(held == rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(16, held * 2));
+                codes = Arrays.copyOf(codes, rows.length);
+            }
+            rows[held] = features;
+            codes[held++] = code;
+        }
+
+        /**
+         * Pack the held examples into a dataset with the file's labels
+         *
+         * @param attributes how many attributes the examples have
+         * @param classes the labels, indexed by code
+         * @return the examples that reach the node
+         */
+        private Dataset dataset(int attributes, String[] classes){
+            long[][] columns = new long[attributes][Dataset.words(held)];
+            for(int i = 0; i < held; i++)
+                for(long bits = rows[i]; bits != 0; bits &= bits - 1)
+                    columns[Long.numberOfTrailingZeros(bits)][i >>> 6] |=
+                            1L << i;
+            Dataset examples = new Dataset(columns, codes, classes, held);
+            rows = null;
+            codes = null;
+            return examples;
+        }
+
+        /**
+         * Put the finished tree together
+         *
+         * @return the tree under this node
+         */
+        private DecisionTree build(){
+            if(tree != null)
+                return tree;
+            DecisionTree split = new DecisionTree(attribute);
+            split.addSubtree(children[0].build());
+            split.addSubtree(children[1].build());
+            return split;
+        }
+    }
+}
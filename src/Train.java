@@ -8,9 +8,6 @@
  */
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
 
 /**
  * @author Chris Tremblay (cst1465)
@@ -23,11 +20,26 @@ import java.util.Scanner;
 public class Train {
 
     /** The usage message */
-    private static final String USAGE = "Usage: java Train <examples> <hypothesisOut> <learning-type>";
+    private static final String USAGE = "Usage: java Train <examples> " +
+            "<hypothesisOut> <learning-type> [-cutoff n] [-nocache] [-metrics] " +
+            "[-metrics-json file] [-rounds n] [-state file] [-resume file] " +
+            "[-checkpoint file] [-checkpoint-every n] [-min-alpha x] " +
+            "[-validate file] [-patience n] [-trim x] [-sample n] " +
+            "[-seed n] [-stream] [-memory n] [-workers n] " +
+            "[-connect port,...]";
 
-    /** How many hypothesis to make */
+    /** How many hypothesis to make by default */
     private static final int K = 1200;
 
+    /** Nodes with fewer examples than this are learned on one thread */
+    private static final int DEFAULT_CUTOFF = 2048;
+
+    /** How many boosting rounds go between checkpoints by default */
+    private static final int DEFAULT_CHECKPOINT_EVERY = 50;
+
+    /** How many rounds the validation error can stall for by default */
+    private static final int DEFAULT_PATIENCE = 50;
+
     /**
      * The driver function.
      * Given an example file, with lines formatted below
@@ -35,23 +47,149 @@ public class Train {
      * then create a hypothesis and serialize it to the output file.
      * Specify the learning algorithm with the learning type either
      *  'dt' or 'ada'
+     * Options after the learning type
+     *  -cutoff n   decision tree nodes with fewer than n examples are not
+     *              split across threads
+     *  -nocache    always parse the examples file and don't write the
+     *              feature cache next to it
+     *  -metrics    print where the training time went
+     *  -metrics-json file
+     *              write where the training time went to a JSON file
+     *  -rounds n   how many boosting rounds the ensemble should have,
+     *              counting any resumed ones, 1200 by default
+     *  -state file save the boosting state to a file so it can be resumed
+     *  -resume file
+     *              carry on boosting from a saved state or checkpoint, the
+     *              examples have to be the ones it was saved with, maybe
+     *              with more added at the end
+     *  -checkpoint file
+     *              save the boosting state every few rounds, so a run that
+     *              is killed can be resumed from the file
+     *  -checkpoint-every n
+     *              how many rounds go between checkpoints, 50 by default
+     *  -min-alpha x
+     *              stop boosting once a round's vote weighs less than x
+     *  -validate file
+     *              check the ensemble against the examples in a file after
+     *              every round, stop once their error stops going down and
+     *              keep the rounds up to the lowest error
+     *  -patience n how many rounds the validation error can go without
+     *              going down, 50 by default
+     *  -trim x     learn each stump from only the heaviest examples that
+     *              hold a share x of the weight, like 0.99
+     *  -sample n   learn each stump from n examples drawn by weight
+     *  -seed n     where the samples start from, 0 by default
+     *  -stream     learn from the feature cache a chunk at a time, for
+     *              example files too big for memory. The model is the
+     *              one learned in memory. Can't be used with the options
+     *              that resume, check, trim or sample boosting
+     *  -memory n   with -stream, the most examples held in memory at once,
+     *              4194304 by default
+     *  -workers n  like -stream, but the passes are made by n ShardWorker
+     *              processes started on this box, each holding a shard of
+     *              the examples. The model is the one -stream learns
+     *  -connect port,...
+     *              like -workers, but with ShardWorkers already listening
+     *              on these loopback ports
      * @param args the command line args
      */
     public static void main(String[] args) {
 
         // make sure correct number of command line args were given
-        if(args.length != 3){
+        if(args.length < 3){
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        // get the options
+        int cutoff = DEFAULT_CUTOFF;
+        boolean cache = true;
+        boolean metrics = false;
+        String metricsJson = null;
+        int rounds = K;
+        String stateOut = null;
+        String resume = null;
+        String checkpoint = null;
+        int checkpointEvery = DEFAULT_CHECKPOINT_EVERY;
+        double minAlpha = Double.NEGATIVE_INFINITY;
+        String validate = null;
+        int patience = DEFAULT_PATIENCE;
+        double trim = 1;
+        int sample = 0;
+        long seed = 0;
+        boolean stream = false;
+        int memory = StreamingLearner.DEFAULT_MEMORY;
+        int workers = 0;
+        int[] ports = null;
+        for(int i = 3; i < args.length; i++){
+            if(args[i].equals("-cutoff") && i + 1 < args.length) {
+                cutoff = parseInt(args[i], args[++i]);
+            } else if(args[i].equals("-nocache")) {
+                cache = false;
+            } else if(args[i].equals("-metrics")) {
+                metrics = true;
+            } else if(args[i].equals("-metrics-json") &&
+                    i + 1 < args.length) {
+                metricsJson = args[++i];
+            } else if(args[i].equals("-rounds") && i + 1 < args.length) {
+                rounds = parseInt(args[i], args[++i]);
+            } else if(args[i].equals("-state") && i + 1 < args.length) {
+                stateOut = args[++i];
+            } else if(args[i].equals("-resume") && i + 1 < args.length) {
+                resume = args[++i];
+            } else if(args[i].equals("-checkpoint") && i + 1 < args.length) {
+                checkpoint = args[++i];
+            } else if(args[i].equals("-checkpoint-every") &&
+                    i + 1 < args.length) {
+                checkpointEvery = parseInt(args[i], args[++i]);
+            } else if(args[i].equals("-min-alpha") && i + 1 < args.length) {
+                minAlpha = parseDouble(args[i], args[++i]);
+            } else if(args[i].equals("-validate") && i + 1 < args.length) {
+                validate = args[++i];
+            } else if(args[i].equals("-patience") && i + 1 < args.length) {
+                patience = parseInt(args[i], args[++i]);
+            } else if(args[i].equals("-trim") && i + 1 < args.length) {
+                trim = parseDouble(args[i], args[++i]);
+            } else if(args[i].equals("-sample") && i + 1 < args.length) {
+                sample = parseInt(args[i], args[++i]);
+            } else if(args[i].equals("-seed") && i + 1 < args.length) {
+                seed = parseLong(args[i], args[++i]);
+            } else if(args[i].equals("-stream")) {
+                stream = true;
+            } else if(args[i].equals("-memory") && i + 1 < args.length) {
+                memory = parseInt(args[i], args[++i]);
+            } else if(args[i].equals("-workers") && i + 1 < args.length) {
+                workers = parseInt(args[i], args[++i]);
+            } else if(args[i].equals("-connect") && i + 1 < args.length) {
+                String[] list = args[++i].split(",");
+                ports = new int[list.length];
+                for(int p = 0; p < list.length; p++)
+                    ports[p] = parseInt(args[i - 1], list[p]);
+            } else {
+                error(args[i]);
+                System.exit(1);
+            }
+        }
+
+        String inMemoryOnly = !cache ? "-nocache" : resume != null ?
+                "-resume" : stateOut != null ? "-state" : checkpoint != null ?
+                "-checkpoint" : validate != null ? "-validate" :
+                minAlpha != Double.NEGATIVE_INFINITY ? "-min-alpha" :
+                trim != 1 ? "-trim" : sample != 0 ? "-sample" : null;
+        String streaming = workers > 0 ? "-workers" : ports != null ?
+                "-connect" : stream ? "-stream" : null;
+        if(streaming != null && inMemoryOnly != null) {
+            System.err.printf("Train: '%s' can't be used with %s\n",
+                    inMemoryOnly, streaming);
             System.err.println(USAGE);
             System.exit(1);
         }
 
         // get and open examples file
         System.out.printf("Opening file '%s'...", args[0]);
-        Scanner examplesScanner = null;
-        try{
-            examplesScanner = new Scanner(new File(args[0]));
-        } catch (FileNotFoundException e) {
-            error(e, args[0]);
+        File examplesFile = new File(args[0]);
+        if(!examplesFile.isFile()) {
+            error(new FileNotFoundException(args[0]), args[0]);
             System.exit(1);
         }
         System.out.println("opened");
@@ -70,23 +208,72 @@ public class Train {
         System.out.printf("Using %s learning\n", decisionTree?" Decision Tree":
                 "AdaBoost");
 
-        // Get input from examples file and put it into an array to pass
-        // to the learning algorithm
-        System.out.print("Parsing training examples...");
-        List<Element> examples = getExamples(examplesScanner);
-        List<Integer> attr = new ArrayList<>();
-        for(int i = 0; i < examples.get(0).getFeatures().size(); i++)
-            attr.add(i);
-        System.out.println("done");
-
-        System.out.print("Learning training examples...");
+        TrainingReport report = metrics || metricsJson != null ?
+                new TrainingReport() : null;
+        TrainingListener listener = report == null ? TrainingListener.NONE :
+                report;
         Hypothesis hypothesis;
-        if(decisionTree) {
-            hypothesis = DecisionTree.decisionTreeLearn(examples, attr, examples, -1);
+        if(streaming != null) {
+            hypothesis = streamLearn(examplesFile, decisionTree, rounds,
+                    memory, cutoff, workers, ports, listener);
         } else {
-            hypothesis = Ensemble.adaboostLearn(examples, K, attr);
+            // Get input from examples file and put it into an array to pass
+            // to the learning algorithm
+            System.out.print("Parsing training examples...");
+            Dataset examples = getExamples(examplesFile, cache);
+            long attr = examples.allAttributes();
+            System.out.println("done");
+
+            System.out.print("Learning training examples...");
+            if(decisionTree) {
+                hypothesis = DecisionTree.parallelDecisionTreeLearn(examples,
+                        attr, -1, cutoff, listener);
+            } else {
+                BoostingState state = resume == null ?
+                        BoostingState.start(examples) : loadState(resume);
+                BoostingOptions.Builder builder =
+                        new BoostingOptions.Builder().listener(listener)
+                                .minAlpha(minAlpha);
+                BoostingOptions options = null;
+                try {
+                    if(checkpoint != null)
+                        builder.checkpoint(new File(checkpoint),
+                                checkpointEvery);
+                    if(validate != null)
+                        builder.validation(getExamples(new File(validate),
+                                cache), patience);
+                    if(trim != 1)
+                        builder.trim(trim);
+                    if(sample != 0)
+                        builder.sample(sample, seed);
+                    options = builder.build();
+                } catch (IllegalArgumentException e) {
+                    System.err.printf("\nTrain: %s\n", e.getMessage());
+                    System.err.println(USAGE);
+                    System.exit(1);
+                }
+                try {
+                    hypothesis = Ensemble.adaboostLearn(examples, state,
+                            Math.max(0, rounds - state.rounds()), attr,
+                            options).compact();
+                } catch (IllegalArgumentException e) {
+                    System.err.printf("\nTrain: Can't resume from '%s', %s\n",
+                            resume, e.getMessage());
+                    System.exit(1);
+                    return;
+                }
+                if(state.stopped() != null)
+                    System.out.printf("stopped after %d rounds, %s...",
+                            state.rounds(), state.stopped());
+                if(stateOut != null)
+                    saveState(state, stateOut);
+            }
         }
         System.out.println("done");
+        if(metrics)
+            System.out.print(report.toText());
+        if(metricsJson != null)
+            writeMetrics(report, metricsJson);
 
         System.out.printf("Writing out to '%s'...", args[1]);
         serializeOut(hypothesis, args[1]);
@@ -94,38 +281,142 @@ public class Train {
     }
 
     /**
-     * Serialize an object to the output file given from the command line
+     * Learn from the feature cache of the examples file a chunk at a time,
+     * writing the cache first if it isn't up to date. The passes are made
+     * here, or by shard workers if there are any. Exit if the examples
+     * can't be read or the workers fail
+     *
+     * @param file the examples file
+     * @param decisionTree whether to learn a tree or an ensemble
+     * @param rounds how many boosting rounds to do
+     * @param memory the most examples held in memory at once
+     * @param cutoff tree nodes with fewer examples are not split up
+     * @param workers how many shard workers to start, 0 for none
+     * @param ports the ports of running shard workers, or null
+     * @param listener told about the training
+     * @return the hypothesis
+     */
+    private static Hypothesis streamLearn(File file, boolean decisionTree,
+                                          int rounds, int memory, int cutoff,
+                                          int workers, int[] ports,
+                                          TrainingListener listener){
+        System.out.print("Preparing the feature file...");
+        try(FeatureFile data = new FeatureCache(new DutchInput())
+                .stream(file.toPath())) {
+            System.out.println("done");
+            if(workers > 0 || ports != null)
+                System.out.print("Starting the shard workers...");
+            try(ExamplePasses passes = workers > 0 ?
+                    ShardCoordinator.spawn(data, workers) : ports != null ?
+                    ShardCoordinator.connect(data, ports) :
+                    StreamingLearner.passes(data)) {
+                if(workers > 0 || ports != null)
+                    System.out.println("done");
+                System.out.print("Learning training examples...");
+                if(decisionTree)
+                    return StreamingLearner.decisionTreeLearn(passes,
+                            data.allAttributes(), -1, memory, cutoff,
+                            listener);
+                return StreamingLearner.adaboostLearn(passes, rounds,
+                        data.allAttributes(), listener).compact();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.printf("Train: Could not stream examples '%s'\n",
+                    file);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Write the hypothesis to the output file given from the command line
+     * in the binary model format
+     *
+     * @param hypothesis the hypothesis to write
+     * @param file the output file path
+     */
+    private static void serializeOut(Hypothesis hypothesis, String file){
+        try {
+            ModelFormat.write(hypothesis, new File(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read a saved boosting state, exit if it can't be read
+     *
+     * @param file the state file path
+     * @return the state
+     */
+    private static BoostingState loadState(String file){
+        try {
+            return BoostingState.load(new File(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.printf("Train: Could not read boosting state '%s'\n",
+                    file);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Save the boosting state so training can be resumed from it
      *
-     * @param o the object to serialize
+     * @param state the boosting state
      * @param file the output file path
      */
-    private static void serializeOut(Object o, String file){
+    private static void saveState(BoostingState state, String file){
         try {
-            FileOutputStream fOut = new FileOutputStream(file);
-            ObjectOutputStream oos = new ObjectOutputStream(fOut);
-            oos.writeObject(o);
+            state.save(new File(file));
         } catch (IOException e) {
             e.printStackTrace();
+            System.err.printf("Train: Could not write boosting state '%s'\n",
+                    file);
             System.exit(1);
         }
     }
 
     /**
-     * Create a List of the contents of the example file to pass to the
-     * decision tree
+     * Write the training report as JSON
      *
-     * @param s the scanner to the input file
-     * @return the contents of the example file put into an array by line
+     * @param report the training report
+     * @param file the output file path
      */
-    private static List<Element> getExamples(Scanner s){
-        List<Element> examples = new ArrayList<>();
-        String line;
-        InputProcessor inputProcessor = new DutchInput();
-        while(s.hasNext()) {
-            line = s.nextLine();
-            examples.add(inputProcessor.createElement(line));
+    private static void writeMetrics(TrainingReport report, String file){
+        try(Writer out = new FileWriter(file)) {
+            out.write(report.toJson());
+            out.write(System.lineSeparator());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.printf("Train: Could not write metrics '%s'\n", file);
+        }
+    }
+
+    /**
+     * Pack the contents of the example file into a dataset to pass to the
+     * learning algorithms. The file is memory mapped and parsed in parallel,
+     * or read from the feature cache if it is up to date
+     *
+     * @param file the examples file
+     * @param cache whether to use the feature cache
+     * @return the contents of the example file packed by attribute
+     */
+    private static Dataset getExamples(File file, boolean cache){
+        try {
+            InputProcessor inputProcessor = new DutchInput();
+            if(cache)
+                return new FeatureCache(inputProcessor).load(file.toPath());
+            return new ExampleLoader(inputProcessor).load(file.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.printf("Train: Could not read examples '%s'\n", file);
+            System.exit(1);
+            return null;
         }
-        return examples;
     }
 
     /**
@@ -141,11 +432,73 @@ public class Train {
 
     /**
      * Print the an error message to standard error and exit
-     * @param a the invalid learning type
+     * @param a the invalid learning type or option
      */
     private static void error(String a){
-        System.err.printf("Train: Invalid learning type '%s', not 'dt' " +
-                "or 'ada'\n", a);
+        if(a.startsWith("-"))
+            System.err.printf("Train: Invalid option '%s'\n", a);
+        else
+            System.err.printf("Train: Invalid learning type '%s', not 'dt' " +
+                    "or 'ada'\n", a);
         System.err.println(USAGE);
     }
+
+    /**
+     * Parse the decimal number given to an option, exit if it is not a
+     * number
+     *
+     * @param option the option the number was given to
+     * @param value the number to parse
+     * @return the parsed number
+     */
+    private static double parseDouble(String option, String value){
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.printf("Train: '%s' needs a number, got '%s'\n",
+                    option, value);
+            System.err.println(USAGE);
+            System.exit(1);
+            return 0;
+        }
+    }
+
+    /**
+     * Parse the number given to an option, exit if it is not a number
+     *
+     * @param option the option the number was given to
+     * @param value the number to parse
+     * @return the parsed number
+     */
+    private static int parseInt(String option, String value){
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.printf("Train: '%s' needs a number, got '%s'\n",
+                    option, value);
+            System.err.println(USAGE);
+            System.exit(1);
+            return 0;
+        }
+    }
+
+    /**
+     * Parse the whole number given to an option that takes a long, exit if
+     * it is not one
+     *
+     * @param option the option the number was given to
+     * @param value the number to parse
+     * @return the parsed number
+     */
+    private static long parseLong(String option, String value){
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.printf("Train: '%s' needs a number, got '%s'\n",
+                    option, value);
+            System.err.println(USAGE);
+            System.exit(1);
+            return 0;
+        }
+    }
 }
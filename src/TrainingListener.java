@@ -0,0 +1,74 @@
+/*
+ * @filename TrainingListener.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file defines a listener the learners tell about their progress, so
+ * training can be measured without changing the learners. By default
+ * nothing listens and the learners don't even read the clock
+ */
+
+/**
+ * Gets told about training as it happens. The parallel tree learner calls
+ * node() from many threads at once, so listeners have to be thread safe
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public interface TrainingListener {
+
+    /** The listener that does nothing, the learners skip timing for it */
+    TrainingListener NONE = new TrainingListener() {};
+
+    /**
+     * Training is starting
+     *
+     * @param learner the name of the learner
+     * @param data the training data
+     */
+    default void started(String learner, Dataset data){
+        started(learner, data.size(), data.attributes());
+    }
+
+    /**
+     * Training is starting on examples that may not all be in memory
+     *
+     * @param learner the name of the learner
+     * @param examples how many training examples there are
+     * @param attributes how many attributes each example has
+     */
+    default void started(String learner, int examples, int attributes){
+    }
+
+    /**
+     * A tree node was learned, not counting its subtrees
+     *
+     * @param examples how many examples reached the node
+     * @param attribute the attribute it splits on, -1 for a leaf
+     * @param nanos how long picking the attribute and splitting took
+     */
+    default void node(int examples, int attribute, long nanos){
+    }
+
+    /**
+     * A boosting round finished
+     *
+     * @param round the round, from 0
+     * @param stump the stump learned in the round
+     * @param error the weighted error of the stump
+     * @param alpha the weight of the stump's vote
+     * @param nanos how long the round took
+     */
+    default void round(int round, DecisionTree stump, double error,
+                       double alpha, long nanos){
+    }
+
+    /**
+     * Training is done
+     *
+     * @param hypothesis what was learned
+     */
+    default void finished(Hypothesis hypothesis){
+    }
+}
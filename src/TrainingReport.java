@@ -0,0 +1,315 @@
+/*
+ * @filename TrainingReport.java
+ * @author Chris Tremblay (cst1465)
+ * @date 10/17/2026
+ *
+ * Description:
+ *  This file contains a training listener that adds up where training time
+ * goes: per node times and example counts for trees, per round errors,
+ * alphas and times for boosting, the attributes picked, throughput, and how
+ * much memory was allocated. It can be printed as text or dumped as JSON
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe training listener that keeps totals. Allocation is read
+ * from the JVM for every live thread at the start and the end, so memory
+ * allocated by threads that ended during training isn't counted
+ *
+ * @author Chris Tremblay (cst1465)
+ * @version 10/17/2026
+ */
+public class TrainingReport implements TrainingListener {
+
+    /** The name of the learner */
+    private volatile String learner = "";
+
+    /** How many training examples there are */
+    private volatile int examples;
+
+    /** How many attributes the examples have */
+    private volatile int attributes;
+
+    /** When training started */
+    private volatile long start;
+
+    /** When training finished */
+    private volatile long end;
+
+    /** Bytes allocated when training started, -1 if it can't be read */
+    private volatile long startAllocated = -1;
+
+    /** Bytes allocated when training finished, -1 if it can't be read */
+    private volatile long endAllocated = -1;
+
+    /** How many tree nodes were split */
+    private final LongAdder splits = new LongAdder();
+
+    /** How many leaves were made */
+    private final LongAdder leaves = new LongAdder();
+
+    /** How many examples reached the tree nodes, all added up */
+    private final LongAdder nodeExamples = new LongAdder();
+
+    /** Time spent in the tree nodes, all added up */
+    private final LongAdder nodeNanos = new LongAdder();
+
+    /** The longest time spent in one node */
+    private final AtomicLong maxNodeNanos = new AtomicLong();
+
+    /** How many times each attribute was picked to split on */
+    private final AtomicLongArray picks = new AtomicLongArray(64);
+
+    /** Every boosting round, as round, attribute, error, alpha, nanos */
+    private final List<double[]> rounds = new ArrayList<>();
+
+    /**
+     * Training is starting
+     *
+     * @param learner the name of the learner
+     * @param examples how many training examples there are
+     * @param attributes how many attributes each example has
+     */
+    @Override
+    public void started(String learner, int examples, int attributes){
+        this.learner = learner;
+        this.examples = examples;
+        this.attributes = attributes;
+        this.startAllocated = allocated();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Count a tree node
+     *
+     * @param examples how many examples reached the node
+     * @param attribute the attribute it splits on, -1 for a leaf
+     * @param nanos how long picking the attribute and splitting took
+     */
+    @Override
+    public void node(int examples, int attribute, long nanos){
+        if(attribute < 0) {
+            leaves.increment();
+        } else {
+            splits.increment();
+            picks.incrementAndGet(attribute);
+        }
+        nodeExamples.add(examples);
+        nodeNanos.add(nanos);
+        maxNodeNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Keep a boosting round
+     *
+     * @param round the round, from 0
+     * @param stump the stump learned in the round
+     * @param error the weighted error of the stump
+     * @param alpha the weight of the stump's vote
+     * @param nanos how long the round took
+     */
+    @Override
+    public void round(int round, DecisionTree stump, double error,
+                      double alpha, long nanos){
+        int attribute = stump.attributes() == 0 ? -1 :
+                stump.getAttribute();
+        if(attribute >= 0)
+            picks.incrementAndGet(attribute);
+        synchronized(rounds) {
+            rounds.add(new double[]{round, attribute, error, alpha, nanos});
+        }
+    }
+
+    /**
+     * Training is done
+     *
+     * @param hypothesis what was learned
+     */
+    @Override
+    public void finished(Hypothesis hypothesis){
+        this.end = System.nanoTime();
+        this.endAllocated = allocated();
+    }
+
+    /**
+     * How many examples were looked at per second. A tree looks at each
+     * example once at every node it reaches, and a boosting round looks at
+     * every example once
+     *
+     * @return the examples per second
+     */
+    public double examplesPerSecond(){
+        double seconds = (end - start) / 1e9;
+        long visits = nodeExamples.sum() + (long) examples * roundCount();
+        return seconds > 0 ? visits / seconds : 0;
+    }
+
+    /**
+     * How many bytes were allocated while training
+     *
+     * @return the bytes, -1 if the JVM can't tell
+     */
+    public long allocatedBytes(){
+        if(startAllocated < 0 || endAllocated < 0)
+            return -1;
+        return endAllocated - startAllocated;
+    }
+
+    /**
+     * The report as lines of text
+     *
+     * @return the report
+     */
+    public String toText(){
+        StringBuilder s = new StringBuilder();
+        s.append(String.format(Locale.ROOT, "Training report (%s)%n",
+                learner));
+        line(s, "examples", "%d", examples);
+        line(s, "wall time", "%.1f ms", (end - start) / 1e6);
+        line(s, "examples/s", "%.0f", examplesPerSecond());
+        long bytes = allocatedBytes();
+        line(s, "allocated", bytes < 0 ? "%s" : "%.1f MB",
+                bytes < 0 ? "unknown" : bytes / 1e6);
+        if(splits.sum() + leaves.sum() > 0) {
+            line(s, "nodes", "%d (%d splits, %d leaves)",
+                    splits.sum() + leaves.sum(), splits.sum(),
+                    leaves.sum());
+            line(s, "node time", "%.1f ms total, %.3f ms max",
+                    nodeNanos.sum() / 1e6, maxNodeNanos.get() / 1e6);
+            line(s, "node examples", "%d", nodeExamples.sum());
+        }
+        List<double[]> copy = rounds();
+        if(!copy.isEmpty()) {
+            double minError = 1, maxError = 0, nanos = 0;
+            for(double[] round : copy){
+                minError = Math.min(minError, round[2]);
+                maxError = Math.max(maxError, round[2]);
+                nanos += round[4];
+            }
+            line(s, "rounds", "%d", copy.size());
+            line(s, "round error", "%.4f min, %.4f max, %.4f last",
+                    minError, maxError, copy.get(copy.size() - 1)[2]);
+            line(s, "round time", "%.3f ms mean",
+                    nanos / copy.size() / 1e6);
+        }
+        StringBuilder picked = new StringBuilder();
+        for(int a = 0; a < picks.length(); a++)
+            if(picks.get(a) > 0)
+                picked.append(' ').append(a).append(':')
+                        .append(picks.get(a));
+        line(s, "attribute picks", "%s", picked.toString().trim());
+        return s.toString();
+    }
+
+    /**
+     * The report as a JSON object, with every boosting round in it
+     *
+     * @return the JSON
+     */
+    public String toJson(){
+        StringBuilder s = new StringBuilder("{");
+        s.append("\"learner\":\"").append(learner).append('"');
+        s.append(",\"examples\":").append(examples);
+        s.append(",\"wallNanos\":").append(end - start);
+        s.append(",\"examplesPerSecond\":").append(
+                number(examplesPerSecond()));
+        s.append(",\"allocatedBytes\":").append(allocatedBytes());
+        s.append(",\"nodes\":{\"splits\":").append(splits.sum());
+        s.append(",\"leaves\":").append(leaves.sum());
+        s.append(",\"examples\":").append(nodeExamples.sum());
+        s.append(",\"nanos\":").append(nodeNanos.sum());
+        s.append(",\"maxNanos\":").append(maxNodeNanos.get()).append('}');
+        s.append(",\"attributePicks\":[");
+        for(int a = 0; a < attributes; a++)
+            s.append(a == 0 ? "" : ",").append(picks.get(a));
+        s.append("],\"rounds\":[");
+        List<double[]> copy = rounds();
+        for(int i = 0; i < copy.size(); i++){
+            double[] round = copy.get(i);
+            s.append(i == 0 ? "{" : ",{");
+            s.append("\"round\":").append((long) round[0]);
+            s.append(",\"attribute\":").append((long) round[1]);
+            s.append(",\"error\":").append(number(round[2]));
+            s.append(",\"alpha\":").append(number(round[3]));
+            s.append(",\"nanos\":").append((long) round[4]).append('}');
+        }
+        return s.append("]}").toString();
+    }
+
+    /**
+     * A copy of the rounds so far
+     *
+     * @return the rounds
+     */
+    private List<double[]> rounds(){
+        synchronized(rounds) {
+            return new ArrayList<>(rounds);
+        }
+    }
+
+    /**
+     * How many boosting rounds there were
+     *
+     * @return the number of rounds
+     */
+    private int roundCount(){
+        synchronized(rounds) {
+            return rounds.size();
+        }
+    }
+
+    /**
+     * Add one line of the text report
+     *
+     * @param s the report so far
+     * @param name what the line is about
+     * @param format the format of the value
+     * @param values the values
+     */
+    private static void line(StringBuilder s, String name, String format,
+                             Object... values){
+        s.append(String.format(Locale.ROOT, "  %-16s", name))
+                .append(String.format(Locale.ROOT, format, values))
+                .append(System.lineSeparator());
+    }
+
+    /**
+     * Write a number for JSON, which has no infinity or NaN
+     *
+     * @param x the number
+     * @return the JSON number, or null
+     */
+    private static String number(double x){
+        return Double.isFinite(x) ? Double.toString(x) : "null";
+    }
+
+    /**
+     * Add up the bytes every live thread has allocated
+     *
+     * @return the bytes, -1 if the JVM can't tell
+     */
+    private static long allocated(){
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) bean;
+        if(!threads.isThreadAllocatedMemorySupported() ||
+                !threads.isThreadAllocatedMemoryEnabled())
+            return -1;
+        long total = 0;
+        for(long bytes : threads.getThreadAllocatedBytes(
+                threads.getAllThreadIds()))
+            if(bytes > 0)
+                total += bytes;
+        return total;
+    }
+}
@@ -9,9 +9,8 @@
  * and Ensemble.java files
  */
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * The library of helper functions for the machine learning algorithms
@@ -30,118 +29,181 @@ public abstract class Utils {
     public static final String EN = "en";
 
     /**
-     * Counts the examples and finds which label has the majority number
+     * Counts the examples and finds which label has the majority number.
+     * When the counts are tied the label that reached that count first in
+     * example order wins, which is the tied label whose last example comes
+     * first
      *
-     * @param examples the list of examples to check
-     * @return the label most present in the list of examples
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @return the label most present in the examples, null if there are none
      */
-    public static String countMajority(List<Element> examples){
-        HashMap<String, Integer> counts = new HashMap<>();
-        String label = null;
-        int maxValue = Integer.MIN_VALUE;
-        for(Element e : examples) {
-            if(!counts.containsKey(e.getLabel()))
-                counts.put(e.getLabel(), 1);
-            else
-                counts.put(e.getLabel(), counts.get(e.getLabel()) + 1);
-            if(counts.get(e.getLabel()) > maxValue){
-                label = e.getLabel();
-                maxValue = counts.get(e.getLabel());
-            }
+    public static String countMajority(Dataset data, int[] examples,
+                                       int from, int to){
+        if(from == to)
+            return null;
+        int[] counts = new int[data.classes().length];
+        int[] last = new int[counts.length];
+        for(int j = from; j < to; j++){
+            int i = examples[j];
+            int code = data.code(i);
+            counts[code]++;
+            if(i > last[code])
+                last[code] = i;
         }
-        return label;
+        int best = -1;
+        for(int c = 0; c < counts.length; c++)
+            if(counts[c] > 0 && (best < 0 || counts[c] > counts[best] ||
+                    (counts[c] == counts[best] && last[c] < last[best])))
+                best = c;
+        return data.classes()[best];
     }
 
     /**
      * Figures out which label in the set of examples has the highest weight
-     * and returns it. Examples and weight are associative arrays
+     * and returns it. When the weights are tied the label that reached that
+     * weight first in example order wins
      *
-     * @param examples the list of training data
-     * @param weights the associated array of weights
-     * @return the label with the highest weight
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param weights the weight of every example in the training data
+     * @return the label with the highest weight, null if there are none
      */
-    public static String countMajority(List<Element> examples,
-                                               double[] weights ){
-
-        HashMap<String, Double> counts = new HashMap<>();
-        String label = null;
-        Element e;
-        double maxWeight = Double.MIN_VALUE;
-        for(int i = 0; i < examples.size(); i++) {
-            e = examples.get(i);
-            if(!counts.containsKey(e.getLabel()))
-                counts.put(e.getLabel(), weights[i]);
-            else
-                counts.put(e.getLabel(), counts.get(e.getLabel()) + weights[i]);
-            if(counts.get(e.getLabel()) > maxWeight){
-                label = e.getLabel();
-                maxWeight = counts.get(e.getLabel());
-            }
+    public static String countMajority(Dataset data, int[] examples,
+                                       int from, int to, double[] weights ){
+        if(from == to)
+            return null;
+        double[] sums = new double[data.classes().length];
+        int[] last = new int[sums.length];
+        Arrays.fill(last, -1);
+        for(int j = from; j < to; j++){
+            int i = examples[j];
+            int code = data.code(i);
+            sums[code] += weights[i];
+            if(i > last[code])
+                last[code] = i;
         }
-        return label;
+        int best = -1;
+        for(int c = 0; c < sums.length; c++)
+            if(last[c] >= 0 && (best < 0 || sums[c] > sums[best] ||
+                    (sums[c] == sums[best] && last[c] < last[best])))
+                best = c;
+        return data.classes()[best];
     }
 
     /**
      * Check to see if the examples are all the same classification.
      * Check to see if they all have the same label
      *
-     * @param examples the list of examples to check
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
      * @return true if all labels are the same, false if not
      */
-    public static boolean sameClassification(List<Element> examples){
-        if(examples.size() == 0 )
+    public static boolean sameClassification(Dataset data, int[] examples,
+                                             int from, int to){
+        if(from == to)
             return false;
-        String label = examples.get(0).getLabel();
-        for(int i = 1; i < examples.size(); i++){
-            if(!examples.get(i).getLabel().equals(label))
+        int code = data.code(examples[from]);
+        for(int j = from + 1; j < to; j++){
+            if(data.code(examples[j]) != code)
                 return false;
         }
         return true;
     }
 
     /**
-     * Calculate the most important attribute based the given examples
+     * Calculate the most important attribute based the given examples.
+     * Counts every attribute in one pass then scores them from the counts.
+     * Big nodes are counted and scored across the worker pool instead
      *
-     * @param examples the list of examples to check
-     * @param attr the attributes available to check
+     * @param data the training data
+     * @param stats the count table to fill, its old counts are thrown away
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes available to check
      * @return the most important attribute
      */
-    public static int mostImportant(List<Element> examples,List<Integer> attr){
-        int championAttr = -1;
-        double championRemainder = Double.MAX_VALUE, rem;
-        for( int i : attr ){
-            rem = remainder(examples, i);
-            if( rem < championRemainder ){
-                championAttr = i;
-                championRemainder = rem;
-            }
-        }
-
-        return championAttr;
+    public static int mostImportant(Dataset data, SplitStats stats,
+                                    int[] examples, int from, int to,
+                                    long attr){
+        if(SplitStats.worthSplitting(attr, to - from))
+            return SplitStats.parallelBest(data, examples, from, to, attr,
+                    null);
+        stats.count(data, examples, from, to, attr);
+        return stats.best(attr);
     }
 
     /**
      * Figures out the most important attribute based on the weights of the
-     * examples at one time.
+     * examples at one time. Counts every attribute in one pass then scores
+     * them from the counts. Big nodes are counted and scored across the
+     * worker pool instead
      *
-     * @param examples the training data
-     * @param attr the attributes available to test
-     * @param weights the weights associated with the examples
+     * @param data the training data
+     * @param stats the count table to fill, its old counts are thrown away
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr bit mask of the attributes available to check
+     * @param weights the weight of every example in the training data
      * @return the most important attribute
      */
-    public static int mostImportant(List<Element> examples, List<Integer> attr,
-                                    double[] weights ){
-        int championAttr = -1;
-        double championRemainder = Double.MAX_VALUE;
-        for( int a : attr ){
-            double rem = remainder(examples, a, weights);
-            if( rem < championRemainder ){
-                championAttr = a;
-                championRemainder = rem;
-            }
+    public static int mostImportant(Dataset data, SplitStats stats,
+                                    int[] examples, int from, int to,
+                                    long attr, double[] weights ){
+        if(SplitStats.worthSplitting(attr, to - from))
+            return SplitStats.parallelBest(data, examples, from, to, attr,
+                    weights);
+        stats.count(data, examples, from, to, attr, weights);
+        return stats.best(attr);
+    }
+
+    /**
+     * Partition the node's examples in place, quicksort style, so the ones
+     * with the attribute false come first and the ones with it true last
+     *
+     * @param data the training data
+     * @param examples the shared array of example indices
+     * @param from the first index of the node's examples, inclusive
+     * @param to the last index of the node's examples, exclusive
+     * @param attr the attribute to split on
+     * @return the first index of the examples with the attribute true
+     */
+    public static int partition(Dataset data, int[] examples, int from,
+                                int to, int attr){
+        int lo = from, hi = to - 1;
+        while(true){
+            while(lo <= hi && !data.getFeature(examples[lo], attr))
+                lo++;
+            while(lo <= hi && data.getFeature(examples[hi], attr))
+                hi--;
+            if(lo >= hi)
+                return lo;
+            int t = examples[lo];
+            examples[lo++] = examples[hi];
+            examples[hi--] = t;
         }
+    }
 
-        return championAttr;
+    /**
+     * Find the code of a label
+     *
+     * @param labels the labels, indexed by code
+     * @param label the label to find
+     * @return the code of the label
+     */
+    public static byte code(String[] labels, String label){
+        for(int i = 0; i < labels.length; i++)
+            if(Objects.equals(labels[i], label))
+                return (byte) i;
+        throw new IllegalArgumentException("Unknown label '" + label + "'");
     }
 
     /**
@@ -159,106 +221,64 @@ public abstract class Utils {
     }
 
     /**
-     * Calculates the remainder for an attribute given example data
+     * Implementation of boolean entropy function
      *
-     * @param examples the training example
-     * @param attr the attribute to calculate
-     * @return the remainder
+     * @param q the number to calculate entropy from
+     * @return the entropy of q
      */
-    private static double remainder(List<Element> examples, int attr){
-        List<Element> trueSubset = new ArrayList<>();
-        List<Element> falseSubset = new ArrayList<>();
-        double positives = 0, remainder = 0, frac;
-
-        // split into examples where feature is true
-        for(Element e : examples){
-            if(e.getFeature(attr))
-                trueSubset.add(e);
-            else
-                falseSubset.add(e);
-        }
-
-        // find remainder of true features
-        if(!trueSubset.isEmpty()) {
-            for (Element e : trueSubset)
-                if (e.getLabel().equals(NL))
-                    positives++;
-            frac = (double) trueSubset.size() / examples.size();
-            remainder += frac * B(positives / trueSubset.size());
-        }
-
-        // find remainder of false features
-        if(!falseSubset.isEmpty()) {
-            positives = 0;
-            for (Element e : falseSubset)
-                if (e.getLabel().equals(NL))
-                    positives++;
-            frac = (double) falseSubset.size() / examples.size();
-            remainder += frac * B(positives / falseSubset.size());
-        }
-
-        return remainder;
+    static double B( double q ){
+        if(q == 0)
+            return 0;
+        if(q==1)
+            return 0;
+        return -(q*log2(q) + (1-q)*log2(1-q));
     }
 
     /**
-     * Calculates the remainder of a set of weighted training examples
+     * The entropy of the class counts on one side of a split. Two classes
+     * use the boolean entropy of the last one, more use the sum over every
+     * class
      *
-     * @param examples the training examples
-     * @param attr the attribute to split on
-     * @param weights teh associative array of weights with examples
-     * @return the remainder of weighted training attributes on given feature
+     * @param counts the table of counts
+     * @param from where this side's count of class 0 is
+     * @param classes how many classes there are
+     * @param n how many examples are on this side, more than 0
+     * @return the entropy of the side
      */
-    private static double remainder(List<Element> examples, int attr,
-                                        double[] weights){
-        List<Integer> trueSubset = new ArrayList<>();
-        List<Integer> falseSubset = new ArrayList<>();
-        double totalSize = 0, remainder = 0, positives = 0, frac,
-                subTotalSize = 0;
-
-        for(int i = 0; i < examples.size(); i++){
-            if(examples.get(i).getFeature(attr))
-                trueSubset.add(i);
-            else
-                falseSubset.add(i);
-            totalSize += weights[i];
-        }
-
-        if(!trueSubset.isEmpty()){
-            for(int i : trueSubset) {
-                if (examples.get(i).getLabel().equals(NL))
-                    positives += weights[i];
-                subTotalSize += weights[i];
-            }
-            frac = subTotalSize/totalSize;
-            remainder += frac * B(positives/subTotalSize);
-        }
-
-        if(!falseSubset.isEmpty()){
-            positives = 0;
-            subTotalSize = 0;
-            for(int i : falseSubset) {
-                if (examples.get(i).getLabel().equals(NL))
-                    positives += weights[i];
-                subTotalSize += weights[i];
+    static double entropy(int[] counts, int from, int classes, int n){
+        if(classes == 2)
+            return B((double) counts[from + 1] / n);
+        double entropy = 0;
+        for(int c = from; c < from + classes; c++)
+            if(counts[c] != 0 && counts[c] != n) {
+                double p = (double) counts[c] / n;
+                entropy -= p * log2(p);
             }
-            frac = subTotalSize/totalSize;
-            remainder += frac * B(positives/subTotalSize);
-        }
-        return remainder;
+        return entropy;
     }
 
     /**
-     * Implementation of boolean entropy function
+     * The entropy of the class weights on one side of a split. Two classes
+     * use the boolean entropy of the last one, more use the sum over every
+     * class
      *
-     * @param q the number to calculate entropy from
-     * @return the entropy of q
+     * @param sums the table of weights
+     * @param from where this side's weight of class 0 is
+     * @param classes how many classes there are
+     * @param total the weight on this side
+     * @return the entropy of the side
      */
-    private static double B( double q ){
-        if(q == 0)
-            return 0;
-        if(q==1)
-            return 0;
-        return -(q*log2(q) + (1-q)*log2(1-q));
+    static double entropy(double[] sums, int from, int classes,
+                          double total){
+        if(classes == 2)
+            return B(sums[from + 1] / total);
+        double entropy = 0;
+        for(int c = from; c < from + classes; c++)
+            if(sums[c] != 0 && sums[c] != total) {
+                double p = sums[c] / total;
+                entropy -= p * log2(p);
+            }
+        return entropy;
     }
 
     /**